@@ -84,4 +84,30 @@ CREATE TABLE disciplinary_records_encrypted(
     id VARCHAR(20) PRIMARY KEY,
     descriptions VARCHAR(1000) NOT NULL,
     FOREIGN KEY (id) REFERENCES disciplinary_records(id)
-) ENCRYPTION='Y';
\ No newline at end of file
+) ENCRYPTION='Y';
+-- 网关nonce重放检测（app.hmac.nonce-store=db 时使用），slot = 时间桶 mod 4，过期分区整体TRUNCATE
+CREATE TABLE gateway_nonces(
+    slot TINYINT NOT NULL,
+    bucket BIGINT NOT NULL,
+    fp BIGINT NOT NULL,
+    batch BIGINT NOT NULL,
+    PRIMARY KEY (slot, bucket, fp),
+    KEY idx_batch (batch)
+) PARTITION BY LIST (slot) (
+    PARTITION p0 VALUES IN (0),
+    PARTITION p1 VALUES IN (1),
+    PARTITION p2 VALUES IN (2),
+    PARTITION p3 VALUES IN (3)
+);
+
+-- 无状态会话令牌的注销列表（app.session.mode=token 时使用）：t=单个令牌ID，u=角色:用户ID 在 not_before 及之前签发的全部令牌
+CREATE TABLE session_revocations(
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    kind CHAR(1) NOT NULL,
+    subject VARCHAR(128) NOT NULL,
+    not_before BIGINT NOT NULL,
+    expires_at BIGINT NOT NULL,
+    created_at TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
+    KEY idx_created (created_at),
+    KEY idx_expires (expires_at)
+);
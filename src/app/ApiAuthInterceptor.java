@@ -1,19 +0,0 @@
-package app;
-
-import jakarta.servlet.http.HttpServletRequest;
-import jakarta.servlet.http.HttpServletResponse;
-import org.springframework.stereotype.Component;
-import org.springframework.web.servlet.HandlerInterceptor;
-
-//统一API入口，HMAC校验
-@Component
-public class ApiAuthInterceptor implements HandlerInterceptor {
-
-    @Override
-    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception{
-        String uri = request.getRequestURI();
-        System.out.println("Get uri:"+uri);
-        return true;
-
-    }
-}
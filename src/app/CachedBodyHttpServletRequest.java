@@ -11,17 +11,35 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
 
+//可重复读取的请求体：body 为 cachedBody[0, length)，缓冲区可能来自 CachingRequestBodyFilter 的池
 public class CachedBodyHttpServletRequest extends HttpServletRequestWrapper {
     private final byte[] cachedBody;
+    private final int length;
 
     public CachedBodyHttpServletRequest(HttpServletRequest request) throws IOException {
         super(request);
         cachedBody = request.getInputStream().readAllBytes();
+        length = cachedBody.length;
+    }
+
+    CachedBodyHttpServletRequest(HttpServletRequest request, byte[] buffer, int length) {
+        super(request);
+        this.cachedBody = buffer;
+        this.length = length;
+    }
+
+    //直接返回缓存的缓冲区，不复制；有效长度见 getCachedLength，调用方不得修改
+    byte[] getCachedBody() {
+        return cachedBody;
+    }
+
+    int getCachedLength() {
+        return length;
     }
 
     @Override
     public ServletInputStream getInputStream() {
-        final ByteArrayInputStream byteArrayInputStream = new ByteArrayInputStream(cachedBody);
+        final ByteArrayInputStream byteArrayInputStream = new ByteArrayInputStream(cachedBody, 0, length);
         return new ServletInputStream() {
             @Override
             public boolean isFinished() {
@@ -42,6 +60,22 @@ public class CachedBodyHttpServletRequest extends HttpServletRequestWrapper {
             public int read() throws IOException {
                 return byteArrayInputStream.read();
             }
+
+            //批量读取，Jackson等按块读取时不再逐字节调用
+            @Override
+            public int read(byte[] b, int off, int len) {
+                return byteArrayInputStream.read(b, off, len);
+            }
+
+            @Override
+            public int available() {
+                return byteArrayInputStream.available();
+            }
+
+            @Override
+            public long skip(long n) {
+                return byteArrayInputStream.skip(n);
+            }
         };
     }
 
@@ -49,4 +83,4 @@ public class CachedBodyHttpServletRequest extends HttpServletRequestWrapper {
     public BufferedReader getReader() throws IOException {
         return new BufferedReader(new InputStreamReader(getInputStream(), StandardCharsets.UTF_8));
     }
-}
\ No newline at end of file
+}
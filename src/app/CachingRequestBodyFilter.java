@@ -2,24 +2,132 @@ package app;
 
 import jakarta.servlet.*;
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.Ordered;
 import org.springframework.core.annotation.Order;
 import org.springframework.stereotype.Component;
 // 使用自定义可重读封装，确保后续过滤器能读取原始 Body
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
 
+/**
+ * 请求体缓存：确定没有body的请求（见 mayHaveBody）直接放行；body 先读入池化的固定大小缓冲区，放不下再按需分配，
+ * 超过 app.http.max-body-bytes 时返回413（带Content-Length时不读body直接拒绝）。
+ */
 @Component
 @Order(Ordered.HIGHEST_PRECEDENCE)
 public class CachingRequestBodyFilter implements Filter {
+    private final int maxBodyBytes;
+    private final int pooledBufferBytes;
+    private final ArrayBlockingQueue<byte[]> pool;
+
+    private record Body(byte[] buffer, int length) {}
+
+    private static final class BodyTooLargeException extends IOException {
+    }
+
+    public CachingRequestBodyFilter(@Value("${app.http.max-body-bytes:8388608}") int maxBodyBytes,
+                                    @Value("${app.http.body-buffer-bytes:16384}") int pooledBufferBytes,
+                                    @Value("${app.http.body-buffer-pool:256}") int poolSize) {
+        this.maxBodyBytes = maxBodyBytes;
+        this.pooledBufferBytes = pooledBufferBytes;
+        this.pool = new ArrayBlockingQueue<>(Math.max(1, poolSize));
+    }
 
     @Override
     public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
             throws IOException, ServletException {
-                System.out.println("[Debug] CachingRequestBodyFilter started");
         HttpServletRequest req = (HttpServletRequest) request;
-        CachedBodyHttpServletRequest wrapped = new CachedBodyHttpServletRequest(req);
-        System.out.println("[Debug] CachingRequestBodyFilter started");
-        chain.doFilter(wrapped, response);
+        long contentLength = req.getContentLengthLong();
+        if (contentLength == 0 || (contentLength < 0 && !mayHaveBody(req))) {
+            chain.doFilter(req, response);
+            return;
+        }
+        if (contentLength > maxBodyBytes) {
+            tooLarge((HttpServletResponse) response);
+            return;
+        }
+        Body body;
+        try {
+            body = readBody(req.getInputStream(), contentLength > pooledBufferBytes ? new byte[(int) contentLength] : borrow());
+        } catch (BodyTooLargeException e) {
+            tooLarge((HttpServletResponse) response);
+            return;
+        }
+        CachedBodyHttpServletRequest wrapped = new CachedBodyHttpServletRequest(req, body.buffer(), body.length());
+        try {
+            chain.doFilter(wrapped, response);
+        } finally {
+            //异步请求可能在过滤器返回后继续读body，此时不回收
+            if (!req.isAsyncStarted()) {
+                release(body.buffer());
+            }
+        }
+    }
+
+    //HTTP/1.x 既没有Content-Length也不是chunked时没有body；HTTP/2 的DATA帧不带长度头，长度未知时照常读取
+    private static boolean mayHaveBody(HttpServletRequest req) {
+        String protocol = req.getProtocol();
+        if (protocol == null || !protocol.startsWith("HTTP/1.")) {
+            return true;
+        }
+        return req.getHeader("Transfer-Encoding") != null;
+    }
+
+    //读满后按倍数扩容（不超过上限），超限时归还缓冲区并抛出 BodyTooLargeException
+    private Body readBody(InputStream in, byte[] initial) throws IOException {
+        byte[] buf = initial;
+        int len = 0;
+        try {
+            while (true) {
+                if (len == buf.length) {
+                    //缓冲区已满：先探测是否还有数据，避免按Content-Length精确分配后又多扩容一次
+                    int next = in.read();
+                    if (next < 0) {
+                        break;
+                    }
+                    if (buf.length >= maxBodyBytes) {
+                        throw new BodyTooLargeException();
+                    }
+                    byte[] bigger = Arrays.copyOf(buf, (int) Math.min(maxBodyBytes, Math.max(buf.length * 2L, 1024)));
+                    release(buf);
+                    buf = bigger;
+                    buf[len++] = (byte) next;
+                    continue;
+                }
+                int n = in.read(buf, len, buf.length - len);
+                if (n < 0) {
+                    break;
+                }
+                len += n;
+            }
+        } catch (IOException e) {
+            release(buf);
+            throw e;
+        }
+        return new Body(buf, len);
+    }
+
+    private byte[] borrow() {
+        byte[] buf = pool.poll();
+        return buf != null ? buf : new byte[pooledBufferBytes];
+    }
+
+    //只回收标准大小的缓冲区，池满则丢弃
+    private void release(byte[] buf) {
+        if (buf.length == pooledBufferBytes) {
+            pool.offer(buf);
+        }
+    }
+
+    private static void tooLarge(HttpServletResponse response) throws IOException {
+        response.setStatus(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE);
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+        response.getWriter().write("{\"error\":\"payload too large\"}");
     }
-}
\ No newline at end of file
+}
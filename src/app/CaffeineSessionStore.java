@@ -0,0 +1,141 @@
+package app;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Scheduler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+@Component
+@ConditionalOnProperty(name = "app.session.mode", havingValue = "cache", matchIfMissing = true)
+public class CaffeineSessionStore implements SessionStore {
+    private static final Logger log = LoggerFactory.getLogger(CaffeineSessionStore.class);
+
+    private final Cache<String, Session> cache;
+    private final SecureRandom secureRandom = new SecureRandom();
+    private final long absoluteSeconds;
+    private final long idleMillis;
+    private final int maxPerUser;
+
+    //角色:用户ID -> 该用户的sid（按创建先后），deque只在 byUser 的 compute 系列方法内修改
+    private final ConcurrentHashMap<String, ArrayDeque<String>> byUser = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, LongAdder> byRole = new ConcurrentHashMap<>();
+
+    public CaffeineSessionStore(@Value("${app.session.absolute-seconds:${app.session.ttl-seconds:3600}}") long absoluteSeconds,
+                                @Value("${app.session.idle-seconds:1800}") long idleSeconds,
+                                @Value("${app.session.max-per-user:5}") int maxPerUser) {
+        this.absoluteSeconds = absoluteSeconds;
+        this.idleMillis = idleSeconds * 1000;
+        this.maxPerUser = maxPerUser;
+        //过期、容量淘汰、主动失效都经过 removalListener 维护索引；到期由调度器及时清理，计数不长时间滞后
+        //缓存只按绝对超时过期，空闲超时看 Session.lastAccess，不因每次访问改写条目
+        this.cache = Caffeine.newBuilder()
+                .expireAfterWrite(absoluteSeconds, TimeUnit.SECONDS)
+                .maximumSize(200_000)
+                .scheduler(Scheduler.systemScheduler())
+                .<String, Session>removalListener((sid, s, cause) -> unindex(sid, s))
+                .build();
+    }
+
+    @Override
+    public Session get(String sid) {
+        Session s = cache.getIfPresent(sid);
+        if (s == null) return null;
+        if (s.isExpired()) {
+            cache.invalidate(sid);
+            return null;
+        }
+        s.touch(System.currentTimeMillis());
+        return s;
+    }
+
+    @Override
+    public Session create(Map<String, Object> claims) {
+        String sid = randomSid();
+        Instant now = Instant.now();
+        Instant exp = now.plus(Duration.ofSeconds(absoluteSeconds));
+        Session session = new Session(sid, claims, now, exp, idleMillis);
+        List<String> overflow = new ArrayList<>();
+        //与 invalidateUser 在同一个key上串行：写缓存和登记索引不会被撤销全部会话插进中间
+        byUser.compute(SessionStore.userKey(session.getRole(), session.getUserId()), (k, sids) -> {
+            if (sids == null) sids = new ArrayDeque<>();
+            cache.put(sid, session);
+            sids.addLast(sid);
+            while (maxPerUser > 0 && sids.size() > maxPerUser) {
+                overflow.add(sids.pollFirst());
+            }
+            return sids;
+        });
+        byRole.computeIfAbsent(String.valueOf(session.getRole()), r -> new LongAdder()).increment();
+        if (!overflow.isEmpty()) {
+            //超过每用户并发会话上限，挤掉最早的会话
+            cache.invalidateAll(overflow);
+            log.info("Session limit reached for user {}, {} oldest session(s) invalidated", session.getEmail(), overflow.size());
+        }
+        log.info("Session created for user {} with sid {}", session.getEmail(), sid);
+        return session;
+    }
+
+    @Override
+    public void invalidate(String sid) {
+        cache.invalidate(sid);
+        log.info("Session invalidated: {}", sid);
+    }
+
+    //按用户索引直接取出该用户的sid，不扫描缓存
+    @Override
+    public void invalidateUser(String role, String userId) {
+        ArrayDeque<String> sids = byUser.remove(SessionStore.userKey(role, userId));
+        if (sids != null) {
+            cache.invalidateAll(sids);
+        }
+        log.info("Sessions invalidated for user {}: {}", userId, sids == null ? 0 : sids.size());
+    }
+
+    //空闲超时的会话还留在缓存里，定期一次性清掉（同时维护用户索引和角色计数）
+    @Scheduled(fixedDelayString = "${app.session.sweep-ms:60000}")
+    public void sweepIdle() {
+        cache.asMap().values().removeIf(Session::isExpired);
+    }
+
+    @Override
+    public Map<String, Long> countByRole() {
+        Map<String, Long> m = new LinkedHashMap<>();
+        byRole.forEach((role, n) -> m.put(role, n.sum()));
+        return m;
+    }
+
+    //removalListener默认在Caffeine的执行器上异步回调，不会在 byUser.compute 内重入
+    private void unindex(String sid, Session s) {
+        if (s == null) return;
+        byUser.computeIfPresent(SessionStore.userKey(s.getRole(), s.getUserId()), (k, sids) -> {
+            sids.remove(sid);
+            return sids.isEmpty() ? null : sids;
+        });
+        LongAdder n = byRole.get(String.valueOf(s.getRole()));
+        if (n != null) n.decrement();
+    }
+
+    private String randomSid() {
+        byte[] bytes = new byte[32];
+        secureRandom.nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+}
\ No newline at end of file
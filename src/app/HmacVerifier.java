@@ -0,0 +1,205 @@
+package app;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+
+import org.springframework.web.util.ContentCachingRequestWrapper;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+@Component
+//HMAC校验器，校验HMAC签名，请求头时效性；由 SecurityFilter 调用
+public class HmacVerifier {
+    private static final Logger log = LoggerFactory.getLogger(HmacVerifier.class);
+
+    private byte[] hmacSharedKey;
+    private final NonceStore nonces;//按时间桶存nonce指纹，满了拒绝而不淘汰
+    private final ThreadLocal<Mac> macs;//每个线程一个已初始化的Mac，doFinal后自动复位
+    private static final ThreadLocal<byte[]> SCRATCH = ThreadLocal.withInitial(() -> new byte[512]);
+    private static final byte SEPARATOR = (byte) '|';
+
+    static final long TIMESTAMP_WINDOW_MS = 300_000; // ±300 秒重放
+    //校验HMAC，时间戳，Nonce随机数
+
+    public HmacVerifier(@Qualifier("gateWayHmacSharedKey") byte[] hmacSharedKey, NonceStore nonces){
+        
+        this.hmacSharedKey = hmacSharedKey;
+        this.macs = ThreadLocal.withInitial(() -> newMac(hmacSharedKey));
+        this.nonces = nonces;
+    }
+
+    void verify(HttpServletRequest req) throws HmacValidationException{
+        String alg = req.getHeader("X-Gateway-Signature-Alg");
+        String signature = req.getHeader("X-Gateway-Signature");//base64
+        String timestamp = req.getHeader("X-Gateway-Timestamp");
+        String nonce = req.getHeader("X-Gateway-Nonce");
+
+        if(alg==null || signature==null || timestamp==null || nonce==null){
+            throw new HmacValidationException("Header parameter missing",401);
+        }
+        if(alg.equals("HMAC-SHA256") == false ){
+            throw new HmacValidationException("Unsupport algrithom",403);
+        }
+        //读取时间戳
+        long time;
+        try{
+            time = Long.parseLong(timestamp);
+        } catch (NumberFormatException e) {
+            throw new HmacValidationException("Invalid timestamp",401);
+        }
+        //校验时间戳
+        long curTime = System.currentTimeMillis();
+        if(Math.abs(curTime - time)>TIMESTAMP_WINDOW_MS){//未来时间戳同样拒绝，否则nonce过期后可被重放
+            throw new HmacValidationException("TimeStamp Out of range",401);
+        }
+        // 签名信息回复+校验：method|path?query|body|timestamp|nonce 逐段喂给Mac，不再拼接字符串
+        byte[] expectSignature;
+        if (req instanceof CachedBodyHttpServletRequest cached) {
+            expectSignature = canonicalHmac(req, cached.getCachedBody(), cached.getCachedLength(), timestamp, nonce);
+        } else {
+            byte[] body = getRequestBody(req);
+            expectSignature = canonicalHmac(req, body, body.length, timestamp, nonce);
+        }
+        byte[] providedSignature;
+        try {
+            providedSignature = Base64.getDecoder().decode(signature);
+        } catch (IllegalArgumentException e) {
+            throw new HmacValidationException("Invalid signature encoding",401);
+        }
+        if(!MessageDigest.isEqual(expectSignature, providedSignature)){//防御时序攻击(返回时间固定)
+            throw new HmacValidationException("Invalid Signature",401);
+        }
+        // Nonce随机数：签名通过后才记录，伪造请求不会占用桶容量
+        switch (nonces.record(nonce, time)) {
+            case REPLAYED -> throw new HmacValidationException("Replayed nonce", 401);
+            case EXPIRED -> throw new HmacValidationException("TimeStamp Out of range", 401);
+            case FULL -> throw new HmacValidationException("Replay cache full", 503);
+            case UNAVAILABLE -> throw new HmacValidationException("Replay store unavailable", 503);
+            default -> { }
+        }
+
+    }
+    private static Mac newMac(byte[] key){
+        try{
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(key, "HmacSHA256"));
+            return mac;
+        } catch(GeneralSecurityException e){
+            log.warn("HMAC calculate error:"+e);
+            throw new RuntimeException("HMAC Error",e);
+        }
+    }
+
+    //结果与 hmacSha256(String.join("|", method, pathWithQuery, body, timestamp, nonce)) 逐字节一致
+    private byte[] canonicalHmac(HttpServletRequest req, byte[] body, int bodyLength, String timestamp, String nonce){
+        Mac mac = macs.get();
+        mac.reset();
+        updateUtf8(mac, req.getMethod());
+        mac.update(SEPARATOR);
+        updateUtf8(mac, req.getRequestURI());
+        String query = req.getQueryString();
+        if (query != null) {
+            mac.update((byte) '?');
+            updateUtf8(mac, query);
+        }
+        mac.update(SEPARATOR);
+        if (isValidUtf8(body, bodyLength)) {
+            mac.update(body, 0, bodyLength);
+        } else {
+            //非法UTF-8：保持原来先解码再编码（替换为U+FFFD）的结果
+            mac.update(new String(body, 0, bodyLength, StandardCharsets.UTF_8).getBytes(StandardCharsets.UTF_8));
+        }
+        mac.update(SEPARATOR);
+        updateUtf8(mac, timestamp);
+        mac.update(SEPARATOR);
+        updateUtf8(mac, nonce);
+        return mac.doFinal();
+    }
+
+    //ASCII直接写入线程内缓冲区，含非ASCII字符时退回 getBytes
+    private static void updateUtf8(Mac mac, String s){
+        byte[] buf = SCRATCH.get();
+        int n = s.length();
+        if (n <= buf.length) {
+            int i = 0;
+            for (; i < n; i++) {
+                char c = s.charAt(i);
+                if (c >= 0x80) break;
+                buf[i] = (byte) c;
+            }
+            if (i == n) {
+                mac.update(buf, 0, n);
+                return;
+            }
+        }
+        mac.update(s.getBytes(StandardCharsets.UTF_8));
+    }
+
+    //严格UTF-8校验（与JDK解码器一致：拒绝超长编码、代理区、超出U+10FFFF）；合法时解码再编码不改变字节
+    static boolean isValidUtf8(byte[] b, int n){
+        int i = 0;
+        while (i < n) {
+            int c = b[i] & 0xff;
+            if (c < 0x80) {
+                i++;
+                continue;
+            }
+            int need;
+            int lo = 0x80, hi = 0xbf;
+            if (c >= 0xc2 && c <= 0xdf) {
+                need = 1;
+            } else if (c >= 0xe0 && c <= 0xef) {
+                need = 2;
+                if (c == 0xe0) lo = 0xa0;
+                else if (c == 0xed) hi = 0x9f;
+            } else if (c >= 0xf0 && c <= 0xf4) {
+                need = 3;
+                if (c == 0xf0) lo = 0x90;
+                else if (c == 0xf4) hi = 0x8f;
+            } else {
+                return false;
+            }
+            if (i + need >= n) {
+                return false;
+            }
+            int c1 = b[i + 1] & 0xff;
+            if (c1 < lo || c1 > hi) {
+                return false;
+            }
+            for (int k = 2; k <= need; k++) {
+                int ck = b[i + k] & 0xff;
+                if (ck < 0x80 || ck > 0xbf) {
+                    return false;
+                }
+            }
+            i += need + 1;
+        }
+        return true;
+    }
+
+    private byte[] getRequestBody(HttpServletRequest request){
+            if(request instanceof ContentCachingRequestWrapper){
+                byte[] bytes = ((ContentCachingRequestWrapper)request).getContentAsByteArray();
+                if (bytes != null) return bytes;
+            }
+            try {
+                return request.getInputStream().readAllBytes();
+            } catch (IOException e) {
+                log.warn("Failed to read request body: {}", e.toString());
+                System.out.println("No cache found for request body");
+                return new byte[0];
+            }
+    }
+}
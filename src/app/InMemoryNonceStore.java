@@ -0,0 +1,115 @@
+package app;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Nonce重放检测：按请求时间戳落入宽度为 TIMESTAMP_WINDOW_MS 的时间桶，
+ * 每个桶是一个long[]开放寻址集合，只存nonce的64位指纹。
+ * 时间戳只接受 ±窗口，因此任一时刻有效的桶最多3个（上一个/当前/下一个），环形复用4个槽位；
+ * 桶满时拒绝请求而不是淘汰旧指纹，内存上限 = 4 × 表长 × 8 字节。
+ * 只在单节点内有效，多节点部署用 JdbcNonceStore。
+ */
+@Component
+@ConditionalOnProperty(name = "app.hmac.nonce-store", havingValue = "memory", matchIfMissing = true)
+public class InMemoryNonceStore implements NonceStore {
+    private static final long EMPTY = 0L;
+
+    private final long windowMs;
+    private final long seed;//进程内随机种子，外部无法预先构造指纹碰撞
+    private final Bucket[] buckets = new Bucket[SLOTS];
+    private final int capacity;
+    private final LongAdder replayed = new LongAdder();
+    private final LongAdder rejectedFull = new LongAdder();
+
+    @Autowired
+    public InMemoryNonceStore(@Value("${app.hmac.nonce-bucket-capacity:524288}") int capacity) {
+        this(HmacVerifier.TIMESTAMP_WINDOW_MS, capacity);
+    }
+
+    InMemoryNonceStore(long windowMs, int capacity) {
+        if (capacity <= 0 || capacity > (1 << 28)) {
+            throw new IllegalArgumentException("nonce bucket capacity out of range: " + capacity);
+        }
+        this.windowMs = windowMs;
+        this.capacity = capacity;
+        this.seed = new SecureRandom().nextLong();
+        //装载因子不超过0.5，线性探测保持短
+        int tableSize = Integer.highestOneBit(Math.max(capacity, 8) - 1) << 2;
+        for (int i = 0; i < SLOTS; i++) {
+            buckets[i] = new Bucket(tableSize);
+        }
+    }
+
+    //只查 timestamp 所在的那一个桶：重放请求的时间戳被签名覆盖，不可能落到别的桶
+    @Override
+    public Result record(String nonce, long timestamp) {
+        long id = Math.floorDiv(timestamp, windowMs);
+        Bucket bucket = buckets[(int) Math.floorMod(id, (long) SLOTS)];
+        Result r = bucket.add(id, NonceStore.fingerprint(seed, nonce), capacity);
+        if (r == Result.REPLAYED) replayed.increment();
+        else if (r == Result.FULL) rejectedFull.increment();
+        return r;
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("bucketCapacity", capacity);
+        long size = 0;
+        for (Bucket b : buckets) {
+            synchronized (b) {
+                size += b.size;
+            }
+        }
+        m.put("size", size);
+        m.put("replayed", replayed.sum());
+        m.put("rejectedFull", rejectedFull.sum());
+        return m;
+    }
+
+    private static final class Bucket {
+        private final long[] table;
+        private final int mask;
+        private long id = Long.MIN_VALUE;
+        private int size;
+
+        Bucket(int tableSize) {
+            this.table = new long[tableSize];
+            this.mask = tableSize - 1;
+        }
+
+        synchronized Result add(long bucketId, long fp, int capacity) {
+            if (bucketId != id) {
+                if (bucketId < id) {
+                    //该槽位已轮转给更新的时间段，这个时间戳早已出窗口
+                    return Result.EXPIRED;
+                }
+                Arrays.fill(table, EMPTY);
+                size = 0;
+                id = bucketId;
+            }
+            int i = (int) (fp ^ (fp >>> 32)) & mask;
+            while (true) {
+                long cur = table[i];
+                if (cur == EMPTY) break;
+                if (cur == fp) return Result.REPLAYED;
+                i = (i + 1) & mask;
+            }
+            if (size >= capacity) {
+                return Result.FULL;
+            }
+            table[i] = fp;
+            size++;
+            return Result.ACCEPTED;
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package app;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import service.DBConnect;
+import service.SqlTemplate;
+import service.SqlTemplate.Type;
+import service.SqlTemplates;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 多节点共享的nonce存储：gateway_nonces 表按 slot = 时间桶 mod SLOTS 分区（见 init_database.sql）。
+ * 请求线程把指纹放进队列后等待结果，写线程把排队的指纹合成一条多值 INSERT IGNORE，
+ * 再按本批次号查回真正插入成功的行：主键冲突（其他请求/节点已写入）即为重放。
+ * 过期的分区整体 TRUNCATE，不逐行删除。数据库不可用或超时一律返回 UNAVAILABLE（拒绝请求）。
+ */
+@Component
+@ConditionalOnProperty(name = "app.hmac.nonce-store", havingValue = "db")
+public class JdbcNonceStore implements NonceStore {
+    private static final Logger log = LoggerFactory.getLogger(JdbcNonceStore.class);
+
+    private static final String INSERT_HEAD = "INSERT IGNORE INTO gateway_nonces (slot, bucket, fp, batch) VALUES ";
+
+    private record Key(long bucket, long fp) {}
+
+    private record Pending(Key key, CompletableFuture<Result> result) {}
+
+    private final DBConnect db;
+    private final long windowMs = HmacVerifier.TIMESTAMP_WINDOW_MS;
+    private final long seed;//各节点必须一致，由共享密钥派生
+    private final int batchSize;
+    private final long timeoutMs;
+    private final BlockingQueue<Pending> queue;
+    private final Thread[] writers;
+    private final SecureRandom random = new SecureRandom();
+    private volatile boolean running = true;
+    private volatile long lastTruncated = Long.MIN_VALUE;
+
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder replayed = new LongAdder();
+    private final LongAdder unavailable = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+
+    public JdbcNonceStore(DBConnect db,
+                          @Qualifier("gateWayHmacSharedKey") byte[] hmacSharedKey,
+                          @Value("${app.hmac.nonce-batch-size:256}") int batchSize,
+                          @Value("${app.hmac.nonce-queue:4096}") int queueSize,
+                          @Value("${app.hmac.nonce-timeout-ms:1000}") long timeoutMs,
+                          @Value("${app.hmac.nonce-writers:2}") int writerCount) {
+        this.db = db;
+        this.seed = deriveSeed(hmacSharedKey);
+        this.batchSize = Math.max(1, batchSize);
+        this.timeoutMs = timeoutMs;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueSize));
+        this.writers = new Thread[Math.max(1, writerCount)];
+        for (int i = 0; i < writers.length; i++) {
+            writers[i] = new Thread(this::runWriter, "nonce-writer-" + i);
+            writers[i].setDaemon(true);
+            writers[i].start();
+        }
+        log.info("Shared nonce store started: batch={}, queue={}, writers={}", this.batchSize, queueSize, writers.length);
+    }
+
+    @Override
+    public Result record(String nonce, long timestamp) {
+        long bucket = Math.floorDiv(timestamp, windowMs);
+        if (bucket < Math.floorDiv(System.currentTimeMillis(), windowMs) - 1) {
+            return Result.EXPIRED;
+        }
+        Pending p = new Pending(new Key(bucket, NonceStore.fingerprint(seed, nonce)), new CompletableFuture<>());
+        if (!running || !queue.offer(p)) {
+            unavailable.increment();
+            return Result.UNAVAILABLE;
+        }
+        try {
+            return p.result().get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException | ExecutionException e) {
+            unavailable.increment();
+            return Result.UNAVAILABLE;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            unavailable.increment();
+            return Result.UNAVAILABLE;
+        }
+    }
+
+    private void runWriter() {
+        List<Pending> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                batch.add(queue.take());
+                queue.drainTo(batch, batchSize - 1);
+                flush(batch);
+            } catch (InterruptedException e) {
+                break;
+            } catch (RuntimeException e) {
+                log.warn("Nonce writer error: {}", e.toString());
+                complete(batch, Result.UNAVAILABLE);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<Pending> batch) {
+        //同一批内重复的指纹只插入一次，后到的直接判为重放
+        Set<Key> seen = new HashSet<>();
+        List<Pending> unique = new ArrayList<>(batch.size());
+        for (Pending p : batch) {
+            if (seen.add(p.key())) {
+                unique.add(p);
+            } else {
+                replayed.increment();
+                p.result().complete(Result.REPLAYED);
+            }
+        }
+        String token = Long.toString(random.nextLong());
+        //行数补齐到2的幂（重复最后一行，INSERT IGNORE 会忽略），多值INSERT只有少数几种SQL文本
+        int rows = DBConnect.inListSize(unique.size());
+        String[] params = new String[rows * 4];
+        for (int i = 0; i < rows; i++) {
+            Key k = unique.get(Math.min(i, unique.size() - 1)).key();
+            params[i * 4] = Long.toString(Math.floorMod(k.bucket(), (long) SLOTS));
+            params[i * 4 + 1] = Long.toString(k.bucket());
+            params[i * 4 + 2] = Long.toString(k.fp());
+            params[i * 4 + 3] = token;
+        }
+        try {
+            db.executeUpdate(insertTemplate(rows), params);
+            Set<Key> inserted = new HashSet<>(db.query(SqlTemplates.NONCE_BY_BATCH, new String[]{token},
+                    rs -> new Key(rs.getLong("bucket"), rs.getLong("fp"))));
+            batches.increment();
+            for (Pending p : unique) {
+                boolean ok = inserted.contains(p.key());
+                (ok ? accepted : replayed).increment();
+                p.result().complete(ok ? Result.ACCEPTED : Result.REPLAYED);
+            }
+        } catch (SQLException e) {
+            log.warn("Nonce batch of {} failed: {}", unique.size(), e.getMessage());
+            complete(unique, Result.UNAVAILABLE);
+        }
+    }
+
+    //按行数注册的多值INSERT，行数为不超过batchSize的2的幂
+    private static SqlTemplate insertTemplate(int rows) {
+        StringBuilder sql = new StringBuilder(INSERT_HEAD.length() + rows * 16).append(INSERT_HEAD);
+        for (int i = 0; i < rows; i++) {
+            sql.append(i == 0 ? "(?, ?, ?, ?)" : ", (?, ?, ?, ?)");
+        }
+        Type[] types = new Type[rows * 4];
+        Arrays.fill(types, Type.LONG);
+        return SqlTemplates.dynamic("gateway_nonces.insert", sql.toString(), types);
+    }
+
+    private void complete(List<Pending> batch, Result r) {
+        for (Pending p : batch) {
+            if (p.result().complete(r) && r == Result.UNAVAILABLE) {
+                unavailable.increment();
+            }
+        }
+    }
+
+    /**
+     * 在当前时间桶的前半段清空 当前桶+2 对应的分区（其中只剩 当前桶-2 的过期指纹）。
+     * 限定前半段是为了容忍节点间时钟偏差：偏差小于半个窗口时，没有节点会提前写入 当前桶+2。
+     */
+    @Scheduled(fixedDelayString = "${app.hmac.nonce-rotate-ms:10000}")
+    public void rotate() {
+        long now = System.currentTimeMillis();
+        long bucket = Math.floorDiv(now, windowMs);
+        if (bucket == lastTruncated || now - bucket * windowMs >= windowMs / 2) {
+            return;
+        }
+        long slot = Math.floorMod(bucket + 2, (long) SLOTS);
+        try {
+            db.executeUpdate("ALTER TABLE gateway_nonces TRUNCATE PARTITION p" + slot, new String[0]);
+            lastTruncated = bucket;
+            log.info("Nonce partition p{} truncated", slot);
+        } catch (SQLException e) {
+            log.warn("Nonce partition p{} truncate failed: {}", slot, e.getMessage());
+        }
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("queued", queue.size());
+        m.put("batches", batches.sum());
+        m.put("accepted", accepted.sum());
+        m.put("replayed", replayed.sum());
+        m.put("unavailable", unavailable.sum());
+        return m;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        for (Thread t : writers) {
+            t.interrupt();
+        }
+        List<Pending> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        complete(rest, Result.UNAVAILABLE);
+    }
+
+    private static long deriveSeed(byte[] key) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            md.update("gateway-nonce-fingerprint|".getBytes(StandardCharsets.UTF_8));
+            return ByteBuffer.wrap(md.digest(key)).getLong();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 unavailable", e);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package app;
+
+import java.util.Map;
+
+/**
+ * Nonce重放检测存储SPI，由 app.hmac.nonce-store 选择实现：
+ * memory（默认，单节点）/ db（多节点共享 gateway_nonces 表）。
+ * 时间戳按 TIMESTAMP_WINDOW_MS 划分时间桶，同一时刻有效的桶不超过3个，实现按 SLOTS 个槽位轮转复用。
+ */
+public interface NonceStore {
+    enum Result { ACCEPTED, REPLAYED, FULL, EXPIRED, UNAVAILABLE }
+
+    int SLOTS = 4;
+
+    /**
+     * 记录 nonce；调用方须先确认 timestamp 在 ±窗口内且签名正确。
+     * 除 ACCEPTED 外都应拒绝请求（FULL/UNAVAILABLE 为503，不放行）。
+     */
+    Result record(String nonce, long timestamp);
+
+    Map<String, Object> stats();
+
+    //带种子的64位指纹，永不为0（0在开放寻址表中表示空槽）
+    static long fingerprint(long seed, String nonce) {
+        long h = seed ^ nonce.length();
+        for (int i = 0; i < nonce.length(); i++) {
+            h = (h ^ nonce.charAt(i)) * 0x9E3779B97F4A7C15L;
+            h ^= h >>> 29;
+        }
+        //fmix64
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h == 0 ? 1L : h;
+    }
+}
@@ -0,0 +1,483 @@
+package app;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+/**
+ * 堆外会话存储：会话记录按定长槽位写在内存映射文件里，堆上只有 long[]/int[] 的sid索引和 用户 -> 槽位 索引。
+ * 定时 force() 落盘作为快照，重启后扫描槽位重建两个索引，未过期的会话无需重新登录。
+ * 文件中只保存sid的SHA-256，不保存sid本身；每条记录带CRC，写到一半的记录在重载时丢弃。
+ */
+@Component
+@ConditionalOnProperty(name = "app.session.mode", havingValue = "offheap")
+public class OffHeapSessionStore implements SessionStore {
+    private static final Logger log = LoggerFactory.getLogger(OffHeapSessionStore.class);
+
+    private static final int MAGIC = 0x53455353;//"SESS"
+    private static final int FORMAT = 2;
+    private static final int HEADER = 64;
+    static final int SLOT = 512;
+    //槽位布局：状态(4) CRC(4) 最近访问(8) sid摘要(32) 创建时间(8) 绝对过期时间(8) 之后是4个(长度2+UTF-8)字段
+    //最近访问在CRC范围之外，访问时直接覆盖这8字节，不重写记录
+    private static final int STATE = 0, CRC = 4, LAST = 8, DIGEST = 16, CREATED = 48, EXPIRES = 56, FIELDS = 64;
+    private static final int LIVE = 1;
+
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    private final Path file;
+    private final int capacity;
+    private final long absoluteSeconds;
+    private final long idleMillis;
+    private final int maxPerUser;
+    private final FileChannel channel;
+    private final MappedByteBuffer map;
+    private final SecureRandom secureRandom = new SecureRandom();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    //sid摘要前8字节 -> 槽位，线性探测，删除用后移法不留墓碑
+    private final long[] keys;
+    private final int[] slots;
+    private final int mask;
+    private final int[] free;
+    private int freeTop;
+    private int size;
+    private final Map<String, Long> roleCounts = new HashMap<>();//受 lock 保护
+    //角色:用户ID -> 该用户的槽位（按创建先后），受 lock 保护
+    private final Map<String, List<Integer>> byUser = new HashMap<>();
+
+    public OffHeapSessionStore(@Value("${app.session.offheap.file:data/sessions.map}") String file,
+                               @Value("${app.session.offheap.capacity:200000}") int capacity,
+                               @Value("${app.session.absolute-seconds:${app.session.ttl-seconds:3600}}") long absoluteSeconds,
+                               @Value("${app.session.idle-seconds:1800}") long idleSeconds,
+                               @Value("${app.session.max-per-user:5}") int maxPerUser) throws IOException {
+        if (capacity <= 0 || (long) capacity * SLOT > Integer.MAX_VALUE - HEADER) {
+            throw new IllegalArgumentException("session capacity out of range: " + capacity);
+        }
+        this.file = Path.of(file);
+        this.capacity = capacity;
+        this.absoluteSeconds = absoluteSeconds;
+        this.idleMillis = idleSeconds * 1000;
+        this.maxPerUser = maxPerUser;
+        int tableSize = Integer.highestOneBit(Math.max(capacity, 8) - 1) << 2;
+        this.keys = new long[tableSize];
+        this.slots = new int[tableSize];
+        this.mask = tableSize - 1;
+        this.free = new int[capacity];
+
+        long start = System.nanoTime();
+        this.channel = open(this.file);
+        long length = HEADER + (long) capacity * SLOT;
+        boolean compatible = channel.size() == length;
+        this.map = channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+        if (compatible && map.getInt(0) == MAGIC && map.getInt(4) == FORMAT && map.getInt(8) == SLOT && map.getInt(12) == capacity) {
+            int loaded = reload();
+            log.info("Session store reloaded {} sessions from {} in {} ms", loaded, this.file, (System.nanoTime() - start) / 1_000_000);
+        } else {
+            if (channel.size() > 0) {
+                log.warn("Session file {} has a different layout, starting empty", this.file);
+            }
+            for (int i = 0; i < capacity; i++) {
+                map.putInt(offset(i) + STATE, 0);
+            }
+            for (int i = capacity - 1; i >= 0; i--) {
+                free[freeTop++] = i;
+            }
+            map.putInt(0, MAGIC).putInt(4, FORMAT).putInt(8, SLOT).putInt(12, capacity);
+            map.force();
+        }
+    }
+
+    private static FileChannel open(Path file) throws IOException {
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        if (!Files.exists(file)) {
+            try {
+                Files.createFile(file, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+            } catch (UnsupportedOperationException e) {
+                Files.createFile(file);
+            }
+        }
+        return FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    //重启：CRC正确且未过期的槽位进索引，其余清空放回空闲栈；用户索引按创建时间排序，超出上限（可能调小过）的最早会话失效
+    private int reload() {
+        long now = System.currentTimeMillis();
+        for (int i = capacity - 1; i >= 0; i--) {
+            int off = offset(i);
+            if (map.getInt(off + STATE) == LIVE && deadline(off) > now && crc(off) == map.getInt(off + CRC)) {
+                indexInsert(map.getLong(off + DIGEST), i);
+                roleCounts.merge(String.valueOf(field(off, 1)), 1L, Long::sum);
+                byUser.computeIfAbsent(userKey(off), k -> new ArrayList<>(2)).add(i);
+                size++;
+            } else {
+                map.putInt(off + STATE, 0);
+                free[freeTop++] = i;
+            }
+        }
+        for (List<Integer> userSlots : new ArrayList<>(byUser.values())) {
+            userSlots.sort(Comparator.comparingLong(slot -> map.getLong(offset(slot) + CREATED)));
+            trim(userSlots);
+        }
+        return size;
+    }
+
+    @Override
+    public Session get(String sid) {
+        if (sid == null) return null;
+        byte[] digest = digest(sid);
+        Session s;
+        lock.readLock().lock();
+        try {
+            int i = indexFind(digest);
+            if (i < 0) return null;
+            int off = offset(slots[i]);
+            s = read(sid, off);
+            //合并后的访问时间直接写回槽位；并发写同一时间戳无妨
+            long now = System.currentTimeMillis();
+            if (!s.isExpired() && s.touch(now)) {
+                map.putLong(off + LAST, now);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (s.isExpired()) {
+            remove(digest);
+            return null;
+        }
+        return s;
+    }
+
+    @Override
+    public Session create(Map<String, Object> claims) {
+        String sid = randomSid();
+        Instant now = Instant.now();
+        Instant exp = now.plusSeconds(absoluteSeconds);
+        Session session = new Session(sid, claims, now, exp, idleMillis);
+        byte[] digest = digest(sid);
+        int overflow;
+        lock.writeLock().lock();
+        try {
+            if (freeTop == 0) {
+                reclaim();
+            }
+            int slot = free[--freeTop];
+            write(offset(slot), digest, session);
+            indexInsert(map.getLong(offset(slot) + DIGEST), slot);
+            roleCounts.merge(String.valueOf(session.getRole()), 1L, Long::sum);
+            List<Integer> userSlots = byUser.computeIfAbsent(userKey(offset(slot)), k -> new ArrayList<>(2));
+            userSlots.add(slot);
+            size++;
+            overflow = trim(userSlots);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (overflow > 0) {
+            log.info("Session limit reached for user {}, {} oldest session(s) invalidated", session.getEmail(), overflow);
+        }
+        log.info("Session created for user {}", session.getEmail());
+        return session;
+    }
+
+    @Override
+    public void invalidate(String sid) {
+        if (sid == null) return;
+        remove(digest(sid));
+        log.info("Session invalidated");
+    }
+
+    //按用户索引直接取出该用户的槽位，不扫描映射文件
+    @Override
+    public void invalidateUser(String role, String userId) {
+        int removed = 0;
+        lock.writeLock().lock();
+        try {
+            List<Integer> userSlots = byUser.get(SessionStore.userKey(role, userId));
+            if (userSlots != null) {
+                //removeSlot 会从该列表中删除
+                for (int slot : new ArrayList<>(userSlots)) {
+                    removeSlot(slot);
+                    removed++;
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Sessions invalidated for user {}: {}", userId, removed);
+    }
+
+    @Override
+    public Map<String, Long> countByRole() {
+        lock.readLock().lock();
+        try {
+            return new HashMap<>(roleCounts);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void remove(byte[] digest) {
+        lock.writeLock().lock();
+        try {
+            int i = indexFind(digest);
+            if (i >= 0) {
+                removeSlot(slots[i]);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    //调用方持有写锁
+    private void removeSlot(int slot) {
+        int off = offset(slot);
+        int i = indexFind(map.getLong(off + DIGEST), off);
+        if (i >= 0) {
+            indexDelete(i);
+        }
+        map.putInt(off + STATE, 0);
+        free[freeTop++] = slot;
+        roleCounts.merge(String.valueOf(field(off, 1)), -1L, (a, b) -> a + b == 0 ? null : a + b);
+        String user = userKey(off);
+        List<Integer> userSlots = byUser.get(user);
+        if (userSlots != null) {
+            userSlots.remove(Integer.valueOf(slot));
+            if (userSlots.isEmpty()) {
+                byUser.remove(user);
+            }
+        }
+        size--;
+    }
+
+    //超过每用户并发会话上限时挤掉最早的会话，返回挤掉的个数；调用方持有写锁
+    private int trim(List<Integer> userSlots) {
+        int removed = 0;
+        while (maxPerUser > 0 && userSlots.size() > maxPerUser) {
+            removeSlot(userSlots.get(0));
+            removed++;
+        }
+        return removed;
+    }
+
+    private String userKey(int off) {
+        return SessionStore.userKey(field(off, 1), field(off, 0));
+    }
+
+    //槽位用尽：先清理过期会话；仍然没有空位时，淘汰最早过期的一批（过期时间在最早者之后 ttl/100 以内，最多容量的1%），避免每次登录都全表扫描
+    private void reclaim() {
+        long now = System.currentTimeMillis();
+        long earliestExp = Long.MAX_VALUE;
+        for (int i = 0; i < capacity; i++) {
+            int off = offset(i);
+            if (map.getInt(off + STATE) != LIVE) continue;
+            long exp = deadline(off);
+            if (exp <= now) {
+                removeSlot(i);
+            } else if (exp < earliestExp) {
+                earliestExp = exp;
+            }
+        }
+        if (freeTop > 0) {
+            return;
+        }
+        long cutoff = earliestExp + absoluteSeconds * 10;
+        int batch = Math.max(1, capacity / 100);
+        for (int i = 0; i < capacity && freeTop < batch; i++) {
+            int off = offset(i);
+            if (map.getInt(off + STATE) == LIVE && deadline(off) <= cutoff) {
+                removeSlot(i);
+            }
+        }
+        log.warn("Session store full, evicted {} sessions expiring first", freeTop);
+    }
+
+    //快照：清理过期会话后把映射页写回磁盘
+    @Scheduled(fixedDelayString = "${app.session.offheap.snapshot-ms:30000}")
+    public void snapshot() {
+        long now = System.currentTimeMillis();
+        lock.writeLock().lock();
+        try {
+            for (int i = 0; i < capacity; i++) {
+                int off = offset(i);
+                if (map.getInt(off + STATE) == LIVE && deadline(off) <= now) {
+                    removeSlot(i);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        map.force();
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        snapshot();
+        channel.close();
+        log.info("Session store saved {} sessions to {}", size, file);
+    }
+
+    private static int offset(int slot) {
+        return HEADER + slot * SLOT;
+    }
+
+    private void write(int off, byte[] digest, Session s) {
+        map.putLong(off + LAST, s.getLastAccessedAt().toEpochMilli());
+        map.put(off + DIGEST, digest);
+        map.putLong(off + CREATED, s.getCreatedAt().toEpochMilli());
+        map.putLong(off + EXPIRES, s.getExpiresAt().toEpochMilli());
+        int p = off + FIELDS;
+        int end = off + SLOT;
+        p = putField(p, end, s.getUserId());
+        p = putField(p, end, s.getRole());
+        p = putField(p, end, s.getEmail());
+        putField(p, end, s.getName());//name放最后，超长时截断显示名
+        map.putInt(off + CRC, crc(off));
+        map.putInt(off + STATE, LIVE);
+    }
+
+    private int putField(int p, int end, String v) {
+        byte[] b = v == null ? new byte[0] : v.getBytes(StandardCharsets.UTF_8);
+        int n = Math.min(b.length, end - p - 2);
+        while (n > 0 && n < b.length && (b[n] & 0xc0) == 0x80) n--;//不截断在多字节字符中间
+        map.putShort(p, (short) n);
+        map.put(p + 2, b, 0, n);
+        return p + 2 + n;
+    }
+
+    private Session read(String sid, int off) {
+        return new Session(sid, field(off, 0), field(off, 2), field(off, 1), field(off, 3),
+                Instant.ofEpochMilli(map.getLong(off + CREATED)), Instant.ofEpochMilli(map.getLong(off + EXPIRES)),
+                map.getLong(off + LAST), idleMillis);
+    }
+
+    //绝对过期与空闲过期中较早的一个
+    private long deadline(int off) {
+        long exp = map.getLong(off + EXPIRES);
+        return idleMillis > 0 ? Math.min(exp, map.getLong(off + LAST) + idleMillis) : exp;
+    }
+
+    //第k个字段：0=userId 1=role 2=email 3=name
+    private String field(int off, int k) {
+        int p = off + FIELDS;
+        for (int i = 0; i < k; i++) {
+            p += 2 + map.getShort(p);
+        }
+        int n = map.getShort(p);
+        if (n == 0) return null;
+        byte[] b = new byte[n];
+        map.get(p + 2, b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    private int crc(int off) {
+        CRC32 c = new CRC32();
+        c.update(map.slice(off + DIGEST, SLOT - DIGEST));
+        return (int) c.getValue();
+    }
+
+    private static byte[] digest(String sid) {
+        return SHA256.get().digest(sid.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private int indexFind(byte[] digest) {
+        long key = ByteBuffer.wrap(digest).getLong();
+        for (int i = home(key); keys[i] != 0; i = (i + 1) & mask) {
+            if (keys[i] == nonZero(key) && digestEquals(offset(slots[i]), digest)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    //按槽位反查索引位置（删除用）
+    private int indexFind(long key, int off) {
+        for (int i = home(key); keys[i] != 0; i = (i + 1) & mask) {
+            if (keys[i] == nonZero(key) && offset(slots[i]) == off) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void indexInsert(long key, int slot) {
+        int i = home(key);
+        while (keys[i] != 0) {
+            i = (i + 1) & mask;
+        }
+        keys[i] = nonZero(key);
+        slots[i] = slot;
+    }
+
+    private void indexDelete(int i) {
+        int j = i;
+        while (true) {
+            j = (j + 1) & mask;
+            if (keys[j] == 0) break;
+            int h = home(keys[j]);
+            //h 不在 (i, j] 区间内的条目可以前移到 i
+            boolean between = i <= j ? (i < h && h <= j) : (i < h || h <= j);
+            if (!between) {
+                keys[i] = keys[j];
+                slots[i] = slots[j];
+                i = j;
+            }
+        }
+        keys[i] = 0;
+    }
+
+    private boolean digestEquals(int off, byte[] digest) {
+        for (int k = 0; k < digest.length; k++) {
+            if (map.get(off + DIGEST + k) != digest[k]) return false;
+        }
+        return true;
+    }
+
+    private int home(long key) {
+        long h = nonZero(key) * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    private static long nonZero(long key) {
+        return key == 0 ? 1 : key;
+    }
+
+    private String randomSid() {
+        byte[] bytes = new byte[32];
+        secureRandom.nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+}
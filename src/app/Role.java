@@ -0,0 +1,39 @@
+package app;
+
+/**
+ * 系统角色，每个角色占一位：路由允许的角色集合是 int 掩码，鉴权只需一次按位与。
+ */
+public enum Role {
+    STUDENT("student"), GUARDIAN("guardian"), ARO("ARO"), DRO("DRO");
+
+    private final String value;
+
+    Role(String value) {
+        this.value = value;
+    }
+
+    //会话/数据库中的角色名
+    public String value() { return value; }
+
+    public int bit() { return 1 << ordinal(); }
+
+    //未知角色为0；字符串switch按哈希分派，不分配对象
+    public static int maskOf(String role) {
+        if (role == null) return 0;
+        return switch (role) {
+            case "student" -> STUDENT.bit();
+            case "guardian" -> GUARDIAN.bit();
+            case "ARO" -> ARO.bit();
+            case "DRO" -> DRO.bit();
+            default -> 0;
+        };
+    }
+
+    public static int maskOf(Role... roles) {
+        int mask = 0;
+        for (Role r : roles) {
+            mask |= r.bit();
+        }
+        return mask;
+    }
+}
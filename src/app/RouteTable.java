@@ -0,0 +1,183 @@
+package app;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.ApplicationContext;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import org.springframework.stereotype.Controller;
+import org.springframework.util.ClassUtils;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+
+/**
+ * 路由表：启动时扫描本应用包内控制器上的 @GetMapping/@PostMapping/...，按 @Roles / @PublicRoute 编译成路径前缀树，
+ * 每个节点按 RequestMethod 下标存放 Route。接口没有标注角色时启动失败，映射和权限不会对不上；
+ * 包外的框架控制器（如Boot自带的 BasicErrorController）不登记，行为同未登记的路由。
+ * 查找只按 '/' 切段比较字符，不截取子串，不分配对象。
+ */
+@Component
+public class RouteTable {
+    private static final Logger log = LoggerFactory.getLogger(RouteTable.class);
+
+    private static final RequestMethod[] METHODS = RequestMethod.values();
+
+    /**
+     * 一次查表得到的路由：公开路由 roles 为0；未登记的路由 route() 返回null。
+     */
+    public record Route(boolean isPublic, int roles, String pattern) {
+        public boolean allows(int roleMask) {
+            return (roles & roleMask) != 0;
+        }
+    }
+
+    private static final class Node {
+        String[] names = new String[0];
+        Node[] children = new Node[0];
+        Node param;//{xxx} 匹配任意非空段
+        final Route[] routes = new Route[METHODS.length];
+
+        Node literal(String name) {
+            for (int i = 0; i < names.length; i++) {
+                if (names[i].equals(name)) return children[i];
+            }
+            Node n = new Node();
+            names = Arrays.copyOf(names, names.length + 1);
+            children = Arrays.copyOf(children, children.length + 1);
+            names[names.length - 1] = name;
+            children[children.length - 1] = n;
+            return n;
+        }
+    }
+
+    private final Node root = new Node();
+    private final Environment environment;
+    private int size;
+
+    public RouteTable(ApplicationContext context) {
+        this.environment = context.getEnvironment();
+        String[] packages = appPackages();
+        //只取类型，不提前实例化控制器
+        for (String name : context.getBeanNamesForAnnotation(Controller.class)) {
+            Class<?> type = context.getType(name);
+            if (type == null) continue;
+            Class<?> controller = ClassUtils.getUserClass(type);
+            if (inPackages(controller, packages)) {
+                register(controller);
+            } else {
+                log.debug("Route table skips controller {}", controller.getName());
+            }
+        }
+        log.info("Route table compiled: {} routes", size);
+    }
+
+    //与 Application 的 scanBasePackages 一致
+    private static String[] appPackages() {
+        SpringBootApplication app = AnnotatedElementUtils.findMergedAnnotation(Application.class, SpringBootApplication.class);
+        return app == null || app.scanBasePackages().length == 0
+                ? new String[]{Application.class.getPackageName()}
+                : app.scanBasePackages();
+    }
+
+    private static boolean inPackages(Class<?> type, String[] packages) {
+        String pkg = type.getPackageName();
+        for (String p : packages) {
+            if (pkg.equals(p) || pkg.startsWith(p + ".")) return true;
+        }
+        return false;
+    }
+
+    void register(Class<?> controller) {
+        RequestMapping base = AnnotatedElementUtils.findMergedAnnotation(controller, RequestMapping.class);
+        String[] prefixes = base == null ? new String[]{""} : paths(base);
+        Roles defaultRoles = controller.getAnnotation(Roles.class);
+        for (Method m : controller.getDeclaredMethods()) {
+            RequestMapping mapping = AnnotatedElementUtils.findMergedAnnotation(m, RequestMapping.class);
+            if (mapping == null) continue;
+            Roles roles = m.isAnnotationPresent(Roles.class) ? m.getAnnotation(Roles.class) : defaultRoles;
+            boolean isPublic = m.isAnnotationPresent(PublicRoute.class);
+            if (isPublic == (roles != null)) {
+                throw new IllegalStateException(controller.getSimpleName() + "." + m.getName()
+                        + " must declare exactly one of @Roles or @PublicRoute");
+            }
+            int mask = isPublic ? 0 : Role.maskOf(roles.value());
+            //未限定方法的映射对所有方法生效
+            RequestMethod[] methods = mapping.method().length == 0 ? METHODS : mapping.method();
+            for (String prefix : prefixes) {
+                for (String path : paths(mapping)) {
+                    //映射里可以写 ${...} 占位符，与Spring MVC一样按配置解析
+                    String pattern = environment.resolvePlaceholders(prefix + path);
+                    Route route = new Route(isPublic, mask, pattern);
+                    for (RequestMethod method : methods) {
+                        add(method, pattern, route);
+                    }
+                }
+            }
+        }
+    }
+
+    private static String[] paths(RequestMapping mapping) {
+        String[] p = mapping.path().length > 0 ? mapping.path() : mapping.value();
+        return p.length > 0 ? p : new String[]{""};
+    }
+
+    void add(RequestMethod method, String pattern, Route route) {
+        if (!pattern.startsWith("/")) {
+            throw new IllegalStateException("Route pattern must start with '/': " + pattern);
+        }
+        Node node = root;
+        for (String segment : pattern.substring(1).split("/", -1)) {
+            if (segment.startsWith("{") && segment.endsWith("}")) {
+                if (node.param == null) node.param = new Node();
+                node = node.param;
+            } else if (segment.indexOf('{') >= 0 || segment.indexOf('*') >= 0) {
+                throw new IllegalStateException("Unsupported route pattern: " + pattern);
+            } else {
+                node = node.literal(segment);
+            }
+        }
+        Route existing = node.routes[method.ordinal()];
+        if (existing != null) {
+            throw new IllegalStateException("Duplicate route " + method + " " + pattern + " (already " + existing.pattern() + ")");
+        }
+        node.routes[method.ordinal()] = route;
+        size++;
+    }
+
+    //SecurityFilter每个请求只查这一次
+    public Route route(String method, String path) {
+        RequestMethod m = method == null ? null : RequestMethod.resolve(method);
+        if (m == null || path == null || path.isEmpty() || path.charAt(0) != '/') {
+            return null;
+        }
+        return match(root, path, 1, m.ordinal());
+    }
+
+    //字面段优先，失败再回溯到路径参数
+    private static Route match(Node node, String path, int start, int method) {
+        int end = path.indexOf('/', start);
+        if (end < 0) end = path.length();
+        int len = end - start;
+        String[] names = node.names;
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].length() == len && path.regionMatches(start, names[i], 0, len)) {
+                Route r = next(node.children[i], path, end, method);
+                if (r != null) return r;
+                break;
+            }
+        }
+        if (node.param != null && len > 0) {
+            return next(node.param, path, end, method);
+        }
+        return null;
+    }
+
+    private static Route next(Node node, String path, int end, int method) {
+        return end == path.length() ? node.routes[method] : match(node, path, end + 1, method);
+    }
+}
@@ -0,0 +1,30 @@
+package app;
+
+import jakarta.servlet.http.HttpServletRequest;
+
+/**
+ * 请求级安全上下文：SecurityFilter 一次性得到的路由分类和会话，后续直接取用，不再重复查表/查会话。
+ * 为兼容已有代码，"session"/"role"/"userId" 请求属性仍然照常设置。
+ */
+public final class SecurityContext {
+    public static final String ATTRIBUTE = "securityContext";
+
+    private final RouteTable.Route route;
+    private final Session session;
+
+    SecurityContext(RouteTable.Route route, Session session) {
+        this.route = route;
+        this.session = session;
+    }
+
+    public static SecurityContext of(HttpServletRequest request) {
+        return (SecurityContext) request.getAttribute(ATTRIBUTE);
+    }
+
+    //未登记的路由为null
+    public RouteTable.Route getRoute() { return route; }
+    //公开路由为null
+    public Session getSession() { return session; }
+    public String getRole() { return session == null ? null : session.getRole(); }
+    public String getUserId() { return session == null ? null : session.getUserId(); }
+}
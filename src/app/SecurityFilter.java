@@ -0,0 +1,121 @@
+package app;
+
+import jakarta.servlet.Filter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+
+/**
+ * 合并后的安全过滤器（原 HmacAuthFilter / SessionFilter / RoleAuthFilter 三段）：
+ * HMAC校验 -> 路由分类（一次查表）-> 会话解析（一次SessionStore.get，含过期判断）-> 角色掩码与路由约束，
+ * 结果放进 SecurityContext，错误响应与原来各段保持一致。
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE+1)
+public class SecurityFilter implements Filter {
+    private static final Logger log = LoggerFactory.getLogger(SecurityFilter.class);
+
+    private final HmacVerifier hmacVerifier;
+    private final SessionStore sessionStore;
+    private final RouteTable routeTable;
+
+    public SecurityFilter(HmacVerifier hmacVerifier, SessionStore sessionStore, RouteTable routeTable) {
+        this.hmacVerifier = hmacVerifier;
+        this.sessionStore = sessionStore;
+        this.routeTable = routeTable;
+    }
+
+    @Override
+    public void doFilter(ServletRequest servletRequest, ServletResponse servletResponse, FilterChain chain) throws IOException, ServletException {
+        HttpServletRequest request = (HttpServletRequest) servletRequest;
+        HttpServletResponse response = (HttpServletResponse) servletResponse;
+        String uri = request.getRequestURI();
+        String method = request.getMethod();
+
+        // HMAC：公钥接口除外
+        if (!"/API/public-key".equals(uri)) {
+            try {
+                hmacVerifier.verify(request);
+            } catch (HmacValidationException exception) {
+                log.warn("HMAC validation failed: {}", exception.getMessage());
+                response.setStatus(exception.getStatusCode());
+                response.getWriter().write(String.format("{\"error\":\"unAuthorized: %s\"}", exception.getMessage()));
+                response.setContentType("application/json");
+                response.setCharacterEncoding("UTF-8");
+                return;
+            }
+        }
+
+        // 公共，可直连
+        RouteTable.Route route = routeTable.route(method, uri);
+        if (route != null && route.isPublic()) {
+            request.setAttribute(SecurityContext.ATTRIBUTE, new SecurityContext(route, null));
+            chain.doFilter(request, response);
+            return;
+        }
+
+        // 私有，需要认证cookie
+        String sid = readSidCookie(request);
+        if (sid == null || sid.isBlank()) {
+            reject(response, 401, "unauthorized: missing sid");
+            return;
+        }
+        //get() 已排除过期/注销的会话
+        Session session = sessionStore.get(sid);
+        if (session == null) {
+            reject(response, 401, "unauthorized: invalid or expired sid");
+            return;
+        }
+        //token模式下访问时间推进后会换发令牌，下发新Cookie
+        if (!sid.equals(session.getSid())) {
+            response.addHeader("Set-Cookie", session.toCookie());
+        }
+
+        //合法身份：未知角色掩码为0
+        String role = session.getRole();
+        int roleMask = Role.maskOf(role);
+        if (roleMask == 0) {
+            reject(response, 403, "forbidden: invalid role");
+            return;
+        }
+        //合法路由
+        if (route == null || !route.allows(roleMask)) {
+            reject(response, 403, "forbidden: insufficient privileges");
+            return;
+        }
+
+        request.setAttribute(SecurityContext.ATTRIBUTE, new SecurityContext(route, session));
+        request.setAttribute("session", session);
+        request.setAttribute("role", role);
+        request.setAttribute("userId", session.getUserId());
+        chain.doFilter(request, response);
+    }
+
+    private static void reject(HttpServletResponse response, int status, String message) throws IOException {
+        response.setStatus(status);
+        response.setContentType("application/json");
+        response.getWriter().write("{\"error\":\"" + message + "\"}");
+    }
+
+    private static String readSidCookie(HttpServletRequest request) {
+        Cookie[] cookies = request.getCookies();
+        if (cookies == null) return null;
+        for (Cookie c : cookies) {
+            if ("sid".equals(c.getName())) {
+                return c.getValue();
+            }
+        }
+        return null;
+    }
+}
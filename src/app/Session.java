@@ -10,9 +10,11 @@ public class Session {
     private final String role;
     private final String name;
     private final Instant createdAt;
-    private final Instant expiresAt;
+    private final Instant expiresAt;//绝对过期时间，Cookie的Max-Age以此为准
+    private final long idleMillis;//空闲超时，0=不限
+    private volatile long lastAccess;
 
-    public Session(String sid, Map<String, Object> claims, Instant createdAt, Instant expiresAt) {
+    public Session(String sid, Map<String, Object> claims, Instant createdAt, Instant expiresAt, long idleMillis) {
         this.sid = sid;
         this.userId = stringClaim(claims, "userId");
         this.email = stringClaim(claims, "email");
@@ -20,6 +22,21 @@ public class Session {
         this.name = stringClaim(claims, "name");
         this.createdAt = createdAt;
         this.expiresAt = expiresAt;
+        this.idleMillis = idleMillis;
+        this.lastAccess = createdAt.toEpochMilli();
+    }
+
+    public Session(String sid, String userId, String email, String role, String name,
+                   Instant createdAt, Instant expiresAt, long lastAccess, long idleMillis) {
+        this.sid = sid;
+        this.userId = userId;
+        this.email = email;
+        this.role = role;
+        this.name = name;
+        this.createdAt = createdAt;
+        this.expiresAt = expiresAt;
+        this.idleMillis = idleMillis;
+        this.lastAccess = lastAccess;
     }
 
     private String stringClaim(Map<String, Object> claims, String key) {
@@ -34,8 +51,34 @@ public class Session {
     public String getName() { return name; }
     public Instant getCreatedAt() { return createdAt; }
     public Instant getExpiresAt() { return expiresAt; }
+    public Instant getLastAccessedAt() { return Instant.ofEpochMilli(lastAccess); }
 
+    //超过绝对过期时间，或空闲超过 idleMillis
     public boolean isExpired() {
-        return Instant.now().isAfter(expiresAt);
+        long now = System.currentTimeMillis();
+        return now > expiresAt.toEpochMilli() || (idleMillis > 0 && now - lastAccess >= idleMillis);
+    }
+
+    /**
+     * 记录一次访问：距上次记录不足 touchInterval 时什么都不写，多个请求合并为一次；
+     * 只是一个volatile字段，不改写缓存条目，并发时谁写都一样。返回是否真正更新了。
+     */
+    public boolean touch(long now) {
+        if (now - lastAccess < touchInterval(idleMillis)) {
+            return false;
+        }
+        lastAccess = now;
+        return true;
+    }
+
+    //合并粒度取空闲超时的1/10（至少1秒），实际空闲超时最多提前这么多
+    static long touchInterval(long idleMillis) {
+        return Math.max(1000, idleMillis / 10);
+    }
+
+    //lax降低csrf；Max-Age取绝对过期时间，空闲超时由服务端判断
+    public String toCookie() {
+        long maxAgeSec = Math.max(0, (expiresAt.toEpochMilli() - System.currentTimeMillis()) / 1000);
+        return String.format("sid=%s; Path=/; HttpOnly; SameSite=Lax; Max-Age=%d", sid, maxAgeSec);
     }
-}
\ No newline at end of file
+}
@@ -1,62 +1,31 @@
 package app;
 
-import com.github.benmanes.caffeine.cache.Cache;
-import com.github.benmanes.caffeine.cache.Caffeine;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.stereotype.Component;
-
-import java.security.SecureRandom;
-import java.time.Duration;
-import java.time.Instant;
-import java.util.Base64;
 import java.util.Map;
-import java.util.concurrent.TimeUnit;
-
-@Component
-public class SessionStore {
-    private static final Logger log = LoggerFactory.getLogger(SessionStore.class);
-
-    private final Cache<String, Session> cache;
-    private final SecureRandom secureRandom = new SecureRandom();
-    private final long ttlSeconds;
-
-    public SessionStore(@Value("${app.session.ttl-seconds:3600}") long ttlSeconds) {
-        this.ttlSeconds = ttlSeconds;
-        this.cache = Caffeine.newBuilder()
-                .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
-                .maximumSize(200_000)
-                .build();
-    }
 
-    public Session get(String sid) {
-        Session s = cache.getIfPresent(sid);
-        if (s != null && s.isExpired()) {
-            cache.invalidate(sid);
-            return null;
-        }
-        return s;
-    }
+/**
+ * 会话存储，由 app.session.mode 选择实现：
+ * cache（默认，本机Caffeine按sid查找）/ token（HMAC签名的无状态令牌，任意节点可校验）。
+ * sid 即 Cookie 的值。
+ */
+public interface SessionStore {
 
-    public Session create(Map<String, Object> claims) {
-        String sid = randomSid();
-        Instant now = Instant.now();
-        Instant exp = now.plus(Duration.ofSeconds(ttlSeconds));
-        Session session = new Session(sid, claims, now, exp);
-        cache.put(sid, session);
-        log.info("Session created for user {} with sid {}", session.getEmail(), sid);
-        return session;
-    }
+    //无效、过期或已注销时返回null
+    Session get(String sid);
+
+    Session create(Map<String, Object> claims);
+
+    void invalidate(String sid);
+
+    //注销该用户的全部会话（修改密码等）
+    void invalidateUser(String role, String userId);
 
-    public void invalidate(String sid) {
-        cache.invalidate(sid);
-        log.info("Session invalidated: {}", sid);
+    //各角色当前的会话数，用于容量规划；不保存会话的实现返回空
+    default Map<String, Long> countByRole() {
+        return Map.of();
     }
 
-    private String randomSid() {
-        byte[] bytes = new byte[32];
-        secureRandom.nextBytes(bytes);
-        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    //不同用户表的ID可能重复，按 角色:ID 区分用户
+    static String userKey(String role, String userId) {
+        return role + ":" + userId;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,267 @@
+package app;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import service.DBConnect;
+import service.SqlTemplates;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 无状态会话：Cookie本身是 base64url(载荷).base64url(HMAC-SHA256)，
+ * 载荷含令牌ID、登录/绝对过期/最近访问时间、userId、role、name、email，校验只做一次HMAC，不查表。
+ * 空闲超时靠重新签发：最近访问时间超过合并粒度时 get() 返回带新sid的会话，由 SecurityFilter 下发新Cookie，令牌ID不变。
+ * 注销（单个令牌）和修改密码（该用户此前签发的全部令牌）写入 session_revocations 表，
+ * 各节点定时增量拉取到本地集合，本节点的注销立即生效。
+ */
+@Component
+@ConditionalOnProperty(name = "app.session.mode", havingValue = "token")
+public class TokenSessionStore implements SessionStore {
+    private static final Logger log = LoggerFactory.getLogger(TokenSessionStore.class);
+
+    private static final byte VERSION = 2;
+    private static final int TOKEN_ID_BYTES = 12;
+    private static final Base64.Encoder B64 = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder B64D = Base64.getUrlDecoder();
+
+    private final DBConnect db;
+    private final ThreadLocal<Mac> macs;
+    private final SecureRandom secureRandom = new SecureRandom();
+    private final long absoluteSeconds;
+    private final long idleMillis;
+
+    //令牌ID -> 过期时间；角色:ID -> 此时刻及之前签发的令牌全部无效（到期时间）
+    private final Map<String, Long> revokedTokens = new ConcurrentHashMap<>();
+    private final Map<String, long[]> userNotBefore = new ConcurrentHashMap<>();
+    private volatile long lastRevocationId = 0;
+
+    public TokenSessionStore(DBConnect db,
+                             @Qualifier("gateWayHmacSharedKey") byte[] gatewayKey,
+                             @Value("${app.session.token-key:}") String tokenKey,
+                             @Value("${app.session.absolute-seconds:${app.session.ttl-seconds:3600}}") long absoluteSeconds,
+                             @Value("${app.session.idle-seconds:1800}") long idleSeconds) {
+        this.db = db;
+        this.absoluteSeconds = absoluteSeconds;
+        this.idleMillis = idleSeconds * 1000;
+        byte[] key = tokenKey.isBlank() ? deriveKey(gatewayKey) : tokenKey.getBytes(StandardCharsets.UTF_8);
+        if (tokenKey.isBlank()) {
+            log.info("app.session.token-key not set, session tokens keyed from the gateway shared key");
+        }
+        this.macs = ThreadLocal.withInitial(() -> newMac(key));
+    }
+
+    @Override
+    public Session get(String sid) {
+        if (sid == null) return null;
+        int dot = sid.lastIndexOf('.');
+        if (dot <= 0) return null;
+        byte[] payload;
+        byte[] signature;
+        try {
+            payload = B64D.decode(sid.substring(0, dot));
+            signature = B64D.decode(sid.substring(dot + 1));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        if (!MessageDigest.isEqual(sign(payload), signature)) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+            if (in.readByte() != VERSION) return null;
+            byte[] tid = new byte[TOKEN_ID_BYTES];
+            in.readFully(tid);
+            long issuedAt = in.readLong();
+            long expiresAt = in.readLong();
+            long lastAccess = in.readLong();
+            String userId = readField(in);
+            String role = readField(in);
+            String name = readField(in);
+            String email = readField(in);
+            Session s = new Session(sid, userId, email, role, name,
+                    Instant.ofEpochMilli(issuedAt), Instant.ofEpochMilli(expiresAt), lastAccess, idleMillis);
+            if (s.isExpired() || isRevoked(B64.encodeToString(tid), role, userId, issuedAt)) {
+                return null;
+            }
+            long now = System.currentTimeMillis();
+            if (!s.touch(now)) {
+                return s;
+            }
+            String renewed = encode(tid, issuedAt, expiresAt, now, userId, role, name, email);
+            return new Session(renewed, userId, email, role, name,
+                    Instant.ofEpochMilli(issuedAt), Instant.ofEpochMilli(expiresAt), now, idleMillis);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public Session create(Map<String, Object> claims) {
+        byte[] tid = new byte[TOKEN_ID_BYTES];
+        secureRandom.nextBytes(tid);
+        long now = System.currentTimeMillis();
+        long exp = now + absoluteSeconds * 1000;
+        String userId = stringClaim(claims, "userId");
+        String email = stringClaim(claims, "email");
+        String role = stringClaim(claims, "role");
+        String name = stringClaim(claims, "name");
+        String token = encode(tid, now, exp, now, userId, role, name, email);
+        log.info("Session token issued for user {} with id {}", email, B64.encodeToString(tid));
+        return new Session(token, userId, email, role, name, Instant.ofEpochMilli(now), Instant.ofEpochMilli(exp), now, idleMillis);
+    }
+
+    private String encode(byte[] tid, long issuedAt, long expiresAt, long lastAccess,
+                          String userId, String role, String name, String email) {
+        ByteArrayOutputStream buf = new ByteArrayOutputStream(128);
+        try (DataOutputStream out = new DataOutputStream(buf)) {
+            out.writeByte(VERSION);
+            out.write(tid);
+            out.writeLong(issuedAt);
+            out.writeLong(expiresAt);
+            out.writeLong(lastAccess);
+            writeField(out, userId);
+            writeField(out, role);
+            writeField(out, name);
+            writeField(out, email);
+        } catch (IOException e) {
+            throw new IllegalStateException("Session token encoding failed", e);
+        }
+        byte[] payload = buf.toByteArray();
+        return B64.encodeToString(payload) + "." + B64.encodeToString(sign(payload));
+    }
+
+    @Override
+    public void invalidate(String sid) {
+        Session s = get(sid);
+        if (s == null) return;
+        String tid = tokenId(sid);
+        long exp = s.getExpiresAt().toEpochMilli();
+        revokedTokens.put(tid, exp);
+        publish("t", tid, 0, exp);
+        log.info("Session token revoked: {}", tid);
+    }
+
+    @Override
+    public void invalidateUser(String role, String userId) {
+        long now = System.currentTimeMillis();
+        String key = SessionStore.userKey(role, userId);
+        long exp = now + absoluteSeconds * 1000;
+        userNotBefore.merge(key, new long[]{now, exp}, (a, b) -> a[0] >= b[0] ? a : b);
+        publish("u", key, now, exp);
+        log.info("Session tokens revoked for user {}", userId);
+    }
+
+    private boolean isRevoked(String tid, String role, String userId, long issuedAt) {
+        if (revokedTokens.containsKey(tid)) return true;
+        if (userNotBefore.isEmpty()) return false;
+        long[] nb = userNotBefore.get(SessionStore.userKey(role, userId));
+        return nb != null && issuedAt <= nb[0];
+    }
+
+    //写库失败时本节点仍然生效，其他节点要等令牌自然过期
+    private void publish(String kind, String subject, long notBefore, long expiresAt) {
+        try {
+            db.executeUpdate(SqlTemplates.REVOCATION_INSERT,
+                    new String[]{kind, subject, Long.toString(notBefore), Long.toString(expiresAt)});
+        } catch (SQLException e) {
+            log.warn("Session revocation not shared: {}", e.getMessage());
+        }
+    }
+
+    //增量拉取其他节点写入的注销记录，并清理本地已过期的条目
+    @Scheduled(fixedDelayString = "${app.session.revocation-poll-ms:2000}")
+    public void pollRevocations() {
+        long now = System.currentTimeMillis();
+        try {
+            List<Long> seen = db.query(SqlTemplates.REVOCATION_SINCE,
+                    new String[]{Long.toString(lastRevocationId), Long.toString(now)}, rs -> {
+                        String subject = rs.getString("subject");
+                        long notBefore = rs.getLong("not_before");
+                        long exp = rs.getLong("expires_at");
+                        if ("u".equals(rs.getString("kind"))) {
+                            userNotBefore.merge(subject, new long[]{notBefore, exp}, (a, b) -> a[0] >= b[0] ? a : b);
+                        } else {
+                            revokedTokens.put(subject, exp);
+                        }
+                        return rs.getLong("id");
+                    });
+            for (long id : seen) {
+                lastRevocationId = Math.max(lastRevocationId, id);
+            }
+        } catch (SQLException e) {
+            log.warn("Session revocation poll failed: {}", e.getMessage());
+        }
+        revokedTokens.values().removeIf(exp -> exp <= now);
+        userNotBefore.values().removeIf(nb -> nb[1] <= now);
+    }
+
+    @Scheduled(fixedDelayString = "${app.session.revocation-purge-ms:600000}")
+    public void purgeRevocations() {
+        try {
+            db.executeUpdate(SqlTemplates.REVOCATION_PURGE, new String[]{Long.toString(System.currentTimeMillis())});
+        } catch (SQLException e) {
+            log.warn("Session revocation purge failed: {}", e.getMessage());
+        }
+    }
+
+    private static String tokenId(String token) {
+        byte[] payload = B64D.decode(token.substring(0, token.lastIndexOf('.')));
+        return B64.encodeToString(Arrays.copyOfRange(payload, 1, 1 + TOKEN_ID_BYTES));
+    }
+
+    private byte[] sign(byte[] payload) {
+        Mac mac = macs.get();
+        mac.reset();
+        return mac.doFinal(payload);
+    }
+
+    private static void writeField(DataOutputStream out, String v) throws IOException {
+        out.writeUTF(v == null ? "" : v);
+    }
+
+    private static String readField(DataInputStream in) throws IOException {
+        String v = in.readUTF();
+        return v.isEmpty() ? null : v;
+    }
+
+    private static String stringClaim(Map<String, Object> claims, String key) {
+        Object v = claims.get(key);
+        return v == null ? null : String.valueOf(v);
+    }
+
+    private static Mac newMac(byte[] key) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(key, "HmacSHA256"));
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC Error", e);
+        }
+    }
+
+    //与网关签名用途分开：HMAC(网关密钥, 固定标签) 作为令牌密钥
+    private static byte[] deriveKey(byte[] gatewayKey) {
+        return newMac(gatewayKey).doFinal("session-token-key".getBytes(StandardCharsets.UTF_8));
+    }
+}
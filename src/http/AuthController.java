@@ -1,13 +1,16 @@
 package http;
 
+import app.PublicRoute;
 import app.Session;
 import app.SessionStore;
 import jakarta.servlet.http.HttpServletResponse;
 import jakarta.servlet.http.HttpServletRequest;
-import service.DBConnect;
+import tables.Principals;
+import users.PrincipalDirectory;
 import utils.SecurityUtils;
 import utils.AuditUtils;
 import utils.ParamValid;
+import utils.PasswordHasher;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.MediaType;
@@ -15,11 +18,9 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RestController;
 
-import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.time.Duration;
-import java.time.Instant;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import org.slf4j.Logger;
@@ -30,10 +31,12 @@ public class AuthController {
 
     @Autowired
     private SessionStore sessionStore;
-    private static final String[] USER_TYPE_STRINGS = {"students", "guardians","staffs"};
+    @Autowired
+    private PasswordHasher passwordHasher;
     private static final Logger log = LoggerFactory.getLogger(AuthController.class.getName());
     // 登录
     @PostMapping(value = "/API/login", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    @PublicRoute
     public Map<String, Object> login(@RequestBody Map<String, Object> body, HttpServletRequest request, HttpServletResponse response) {
 
         String email = body.get("email").toString();
@@ -54,7 +57,18 @@ public class AuthController {
             return resp;
         }
         
-        Map<String, Object> claims = queryLogIn(email, password, requestId);
+        Map<String, Object> claims;
+        try {
+            claims = queryLogIn(email, password, requestId);
+        } catch (PasswordHasher.BusyException e) {
+            //哈希线程池已满，快速失败
+            log.warn("audit={}", AuditUtils.pack("requestId", requestId, "emailMasked", SecurityUtils.maskEmail(email), "message", "login rejected: " + e.getMessage()));
+            resp.put("ok",false);
+            resp.put("message","server busy, retry later");
+            response.setStatus(503);
+            response.addHeader("Retry-After", "1");
+            return resp;
+        }
         if(claims == null){
             log.warn("audit={}", AuditUtils.pack("requestId", requestId, "emailMasked", SecurityUtils.maskEmail(email), "message", "invalid credentials"));
             resp.put("ok",false);
@@ -75,68 +89,52 @@ public class AuthController {
         return resp;
     }
 
+    //与 SecurityFilter 换发令牌时的Cookie格式一致，Max-Age取绝对过期时间
     private String buildSidCookie(Session session) {
-        long maxAgeSec = Math.max(0, Duration.between(Instant.now(), session.getExpiresAt()).getSeconds());
-        //lax降低csrf
-        return String.format("sid=%s; Path=/; HttpOnly; SameSite=Lax; Max-Age=%d", session.getSid(), maxAgeSec);
+        return session.toCookie();
     }
 
-    private static Map<String, Object> queryLogIn(String email, String password, String requestId) {
-        for(String userType : USER_TYPE_STRINGS){
-            String saltQuery = "SELECT salt FROM %s_encrypted WHERE email = ?".formatted(userType);
-            String[] saltParams = {email};
-            String salt;
-            try (ResultSet rsSalt = DBConnect.dbConnector.executeQuery(saltQuery, saltParams)) {//根据ID搜索盐，没有跳过
-                if (rsSalt.next()) {
-                    salt = rsSalt.getString("salt");
-                } else {
-                    continue; 
-                }
+    //一次UNION查询取出该邮箱在三张表中的账户，逐个在应用内比较哈希
+    private Map<String, Object> queryLogIn(String email, String password, String requestId) {
+        List<Principals.Principal> candidates;
+        try {
+            candidates = PrincipalDirectory.directory.findByEmail(email);
+        } catch (SQLException e) {
+            log.error("audit={}", AuditUtils.pack("requestId", requestId, "emailMasked", SecurityUtils.maskEmail(email), "error", "SQL_EXCEPTION"));
+            return null;
+        }
+        for(Principals.Principal p : candidates){
+            //盐和哈希按主键现取，不用缓存里的值
+            Principals.Credentials c;
+            try {
+                c = Principals.findCredentials(p.userType(), p.id());
             } catch (SQLException e) {
-                log.error("audit={}", AuditUtils.pack("requestId", requestId, "emailMasked", SecurityUtils.maskEmail(email), "userType", userType, "error", "SQL_EXCEPTION"));
-                continue; 
+                log.error("audit={}", AuditUtils.pack("requestId", requestId, "emailMasked", SecurityUtils.maskEmail(email), "error", "SQL_EXCEPTION"));
+                return null;
+            }
+            if(c == null || !passwordHasher.verify(password, c.salt(), c.passwordHash())){
+                log.warn("audit={}", AuditUtils.pack("requestId", requestId, "emailMasked", SecurityUtils.maskEmail(email), "userType", p.userType(), "message", "no matching record in encrypted table"));
+                continue;
             }
-            String sqlEnc = "SELECT COUNT(*) AS count FROM %s_encrypted WHERE email = ? AND password_hash = ?".formatted(userType);
-            String passwdHash = SecurityUtils.getPasswdHash(password, salt);
-            String[] paramsEnc = {email, passwdHash};
-            try(ResultSet rs = DBConnect.dbConnector.executeQuery(sqlEnc, paramsEnc)){
-                if(rs.next() && rs.getInt("count") > 0){
-                    String sql = "SELECT s.*, se.*  FROM %s s JOIN %s_encrypted se ON s.id = se.id WHERE email = ? AND password_hash = ?".formatted(userType, userType);
-                    String[] params = {email, passwdHash};
-                    try(ResultSet rsUser = DBConnect.dbConnector.executeQuery(sql, params)){
-                        if(rsUser.next()){
-                            Map<String, Object> claims = new HashMap<>();
-                            String id = rsUser.getString("id");
-                            String mail = rsUser.getString("email");
-                            String first = rsUser.getString("first_name");
-                            String last = rsUser.getString("last_name");
-                            String role;
-                            if ("staffs".equals(userType)) {
-                                role = rsUser.getString("role");
-                            } else {
-                                role = userType.substring(0, userType.length() - 1);
-                            }
-                            String name = (first != null ? first : "") + (last != null ? (first != null ? " " : "") + last : "");
-                            claims.put("userId", id);
-                            claims.put("email", mail);
-                            claims.put("role", role);
-                            claims.put("name", name);
-                            log.info("audit={}", AuditUtils.pack("requestId", requestId, "userId", id, "role", role, "emailMasked", SecurityUtils.maskEmail(mail), "message", "login success"));
-                            return claims;
-                        } else {
-                            log.warn("audit={}", AuditUtils.pack("requestId", requestId, "emailMasked", SecurityUtils.maskEmail(email), "userType", userType, "message", "no matching record after join"));
-                        }
-                    } catch(SQLException e){
-                        log.error("audit={}", AuditUtils.pack("requestId", requestId, "emailMasked", SecurityUtils.maskEmail(email), "userType", userType, "error", "SQL_EXCEPTION"));
-                    }
-                } else {
-                    log.warn("audit={}", AuditUtils.pack("requestId", requestId, "emailMasked", SecurityUtils.maskEmail(email), "userType", userType, "message", "no matching record in encrypted table"));
-                }
-            } catch(SQLException e){
-                log.error("audit={}", AuditUtils.pack("requestId", requestId, "emailMasked", SecurityUtils.maskEmail(email), "userType", userType, "error", "SQL_EXCEPTION"));
+            Map<String, Object> claims = new HashMap<>();
+            String userType = p.userType();
+            String first = p.firstName();
+            String last = p.lastName();
+            String role;
+            if ("staffs".equals(userType)) {
+                role = p.role();
+            } else {
+                role = userType.substring(0, userType.length() - 1);
             }
+            String name = (first != null ? first : "") + (last != null ? (first != null ? " " : "") + last : "");
+            claims.put("userId", p.id());
+            claims.put("email", p.email());
+            claims.put("role", role);
+            claims.put("name", name);
+            log.info("audit={}", AuditUtils.pack("requestId", requestId, "userId", p.id(), "role", role, "emailMasked", SecurityUtils.maskEmail(p.email()), "message", "login success"));
+            return claims;
         }
         log.warn("audit={}", AuditUtils.pack("requestId", requestId, "emailMasked", SecurityUtils.maskEmail(email), "message", "invalid credentials"));
         return null;
     }
-}
\ No newline at end of file
+}
@@ -1,5 +1,7 @@
 package http;
 
+import app.Role;
+import app.Roles;
 import app.Session;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
@@ -18,8 +20,8 @@ import users.DRO;
 import utils.AuditUtils;
 import utils.ParamValid;
 import service.DBConnect;
+import service.SqlTemplates;
 
-import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -31,6 +33,7 @@ public class DisciplinaryController {
     private Logger log = LoggerFactory.getLogger(DisciplinaryController.class);
 
     @GetMapping(value = "/API/disciplinary-records", produces = MediaType.APPLICATION_JSON_VALUE)
+    @Roles(Role.DRO)
     public Map<String, Object> getDiscinaryRecord(
             @RequestParam(value = "studentId", required = false) String studentId,
             @RequestParam(value = "date", required = false) String date,
@@ -92,6 +95,7 @@ public class DisciplinaryController {
     }
 
     @PostMapping(value = "/API/disciplinary-records", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    @Roles(Role.DRO)
     public Map<String, Object> addDisciplinaryRecord(@RequestBody Map<String, String> body, HttpServletRequest request , HttpServletResponse response){
         String requestId = request.getHeader("X-Request-ID");
         if (requestId == null || requestId.isBlank()) {
@@ -147,8 +151,9 @@ public class DisciplinaryController {
         }
 
         //确保学生存在
-        try (ResultSet studentRs = DBConnect.dbConnector.executeQuery("SELECT COUNT(*) AS count FROM students WHERE id = ?", new String[]{studentId})) {
-            if (studentRs.next() && studentRs.getInt("count") == 0) {
+        try {
+            Integer studentCount = DBConnect.dbConnector.queryOne(SqlTemplates.STUDENT_COUNT, new String[]{studentId}, rs -> rs.getInt("count"));
+            if (studentCount != null && studentCount == 0) {
                 err.put("error", "invalid student");
                 err.put("code", 400);
                 response.setStatus(400);
@@ -184,6 +189,7 @@ public class DisciplinaryController {
     }
 
     @PutMapping(value = "/API/disciplinary-records", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    @Roles(Role.DRO)
     public Map<String, Object> updateDisciplinaryRecord(@RequestBody Map<String, String> body, HttpServletRequest request , HttpServletResponse response){
         String requestId = request.getHeader("X-Request-ID");
         if (requestId == null || requestId.isBlank()) {
@@ -253,8 +259,9 @@ public class DisciplinaryController {
         }
 
         //确保学生存在
-        try(ResultSet rs = DBConnect.dbConnector.executeQuery("SELECT COUNT(*) AS count FROM disciplinary_records WHERE id = ?", new String[]{dicId})){
-            if(rs.next() && rs.getInt("count")==0){
+        try{
+            Integer recordCount = DBConnect.dbConnector.queryOne(SqlTemplates.DISCIPLINARY_COUNT, new String[]{dicId}, rs -> rs.getInt("count"));
+            if(recordCount != null && recordCount==0){
                 err.put("error", "not found");
                 err.put("code", 404);
                 response.setStatus(404);
@@ -285,6 +292,7 @@ public class DisciplinaryController {
     }
 
     @DeleteMapping(value = "/API/disciplinary-records", produces = MediaType.APPLICATION_JSON_VALUE)
+    @Roles(Role.DRO)
     public Map<String, Object> deleteDisciplinaryRecord(@RequestParam("id") String dicId, HttpServletRequest request , HttpServletResponse response){
         String requestId = request.getHeader("X-Request-ID");
         if (requestId == null || requestId.isBlank()) {
@@ -0,0 +1,329 @@
+package http;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import service.DBConnect;
+import service.SqlTemplates;
+import tables.Courses;
+import tables.Grades;
+import tables.ReportCache;
+import tables.Students;
+import utils.ParamValid;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+//批量成绩上传：CSV / NDJSON 逐行解析 -> ParamValid校验 -> 集合查询解析ID -> 分块事务批量写入
+class GradeBulkUpload {
+    static final int MAX_ROWS = 5000;
+    private static final int CHUNK_ROWS = 200;
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    static final class Row {
+        final int line;
+        String studentId, courseId, courseName, term, grade, comments;
+        String encryptedId;
+        String status;
+        String id;
+        String message;
+
+        Row(int line) {
+            this.line = line;
+        }
+
+        boolean failed() {
+            return "error".equals(status);
+        }
+
+        void fail(String msg) {
+            status = "error";
+            message = msg;
+        }
+
+        Map<String, Object> toReport() {
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("line", line);
+            m.put("status", status);
+            if (id != null) m.put("id", id);
+            if (message != null) m.put("message", message);
+            return m;
+        }
+    }
+
+    static final class TooManyRowsException extends IOException {
+        TooManyRowsException() {
+            super("too many rows, limit " + MAX_ROWS);
+        }
+    }
+
+    static boolean isCsv(String contentType) {
+        return contentType != null && contentType.toLowerCase(Locale.ROOT).contains("csv");
+    }
+
+    //CSV首行为表头：studentId,courseId,courseName,term,grade,comments（列顺序不限，courseId/courseName二选一）
+    static List<Row> parseCsv(BufferedReader reader) throws IOException {
+        List<Row> rows = new ArrayList<>();
+        String[] header = null;
+        String line;
+        int lineNo = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNo++;
+            if (line.isBlank()) continue;
+            List<String> cells = splitCsv(line);
+            if (header == null) {
+                header = new String[cells.size()];
+                for (int i = 0; i < cells.size(); i++) {
+                    header[i] = normalizeKey(cells.get(i));
+                }
+                continue;
+            }
+            if (rows.size() >= MAX_ROWS) throw new TooManyRowsException();
+            Map<String, String> values = new HashMap<>();
+            for (int i = 0; i < header.length && i < cells.size(); i++) {
+                values.put(header[i], cells.get(i));
+            }
+            rows.add(toRow(lineNo, values));
+        }
+        return rows;
+    }
+
+    static List<Row> parseNdjson(BufferedReader reader) throws IOException {
+        List<Row> rows = new ArrayList<>();
+        String line;
+        int lineNo = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNo++;
+            if (line.isBlank()) continue;
+            if (rows.size() >= MAX_ROWS) throw new TooManyRowsException();
+            Map<String, String> values = new HashMap<>();
+            try {
+                Map<?, ?> obj = JSON.readValue(line, Map.class);
+                for (Map.Entry<?, ?> e : obj.entrySet()) {
+                    if (e.getValue() != null) {
+                        values.put(normalizeKey(String.valueOf(e.getKey())), String.valueOf(e.getValue()));
+                    }
+                }
+            } catch (IOException e) {
+                Row bad = new Row(lineNo);
+                bad.fail("malformed json");
+                rows.add(bad);
+                continue;
+            }
+            rows.add(toRow(lineNo, values));
+        }
+        return rows;
+    }
+
+    private static String normalizeKey(String key) {
+        return key.trim().replace("_", "").toLowerCase(Locale.ROOT);
+    }
+
+    private static Row toRow(int lineNo, Map<String, String> values) {
+        Row row = new Row(lineNo);
+        row.studentId = trimToNull(values.get("studentid"));
+        row.courseId = trimToNull(values.get("courseid"));
+        row.courseName = trimToNull(values.get("coursename"));
+        row.term = trimToNull(values.get("term"));
+        row.grade = trimToNull(values.get("grade"));
+        row.comments = values.get("comments") == null ? "" : values.get("comments");
+        return row;
+    }
+
+    private static String trimToNull(String v) {
+        if (v == null) return null;
+        String t = v.trim();
+        return t.isEmpty() ? null : t;
+    }
+
+    //支持双引号包裹和""转义的最小CSV拆分
+    private static List<String> splitCsv(String line) {
+        List<String> cells = new ArrayList<>();
+        StringBuilder cur = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"') {
+                    if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        cur.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    cur.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                cells.add(cur.toString());
+                cur.setLength(0);
+            } else {
+                cur.append(c);
+            }
+        }
+        cells.add(cur.toString());
+        return cells;
+    }
+
+    //与单条 POST /API/grades 相同的字段校验
+    static void validate(List<Row> rows) {
+        for (Row row : rows) {
+            if (row.failed()) continue;
+            if (row.studentId == null) {
+                row.fail("missing studentId");
+            } else if (row.courseId == null && row.courseName == null) {
+                row.fail("missing course");
+            } else if (row.courseId != null && !ParamValid.isValidCourseID(row.courseId)) {
+                row.fail("invalid courseId");
+            } else if (!ParamValid.isValidGrade(row.grade)) {
+                row.fail("invalid grade");
+            } else if (!ParamValid.isValidTerm(row.term)) {
+                row.fail("invalid term");
+            } else if (!row.comments.isBlank() && !ParamValid.isValidString(row.comments)) {
+                row.fail("invalid comments");
+            }
+        }
+    }
+
+    /**
+     * 课程、学生、已有成绩各用一次集合查询解析，不再逐行查库。
+     * 数据库按排序规则忽略大小写和尾部空格比较ID，这里用 fold() 后的值匹配，学生ID改写为库中的写法。
+     */
+    static void resolve(List<Row> rows) throws SQLException {
+        Set<String> courseNames = new HashSet<>();
+        Set<String> courseIds = new HashSet<>();
+        Set<String> studentIds = new HashSet<>();
+        for (Row row : rows) {
+            if (row.failed()) continue;
+            if (row.courseName != null) courseNames.add(row.courseName);
+            else courseIds.add(row.courseId);
+            studentIds.add(row.studentId);
+        }
+        Map<String, String> idByName = Courses.getIdsByName(courseNames);
+        Set<String> validCourses = new HashSet<>();
+        for (String id : Courses.existingIds(courseIds)) validCourses.add(fold(id));
+        for (String id : idByName.values()) validCourses.add(fold(id));
+        Set<String> dbStudents = Students.existingIds(studentIds);
+        Map<String, String> studentById = new HashMap<>();
+        for (String id : dbStudents) studentById.put(fold(id), id);
+        Map<String, String> existing = new HashMap<>();
+        for (Map.Entry<String, String> e : Grades.getEncryptedIdsByKey(dbStudents).entrySet()) {
+            existing.put(fold(e.getKey()), e.getValue());
+        }
+
+        Set<String> seen = new HashSet<>();
+        for (Row row : rows) {
+            if (row.failed()) continue;
+            if (row.courseName != null) {
+                row.courseId = idByName.get(row.courseName);
+            }
+            if (row.courseId == null || !validCourses.contains(fold(row.courseId))) {
+                row.fail("invalid course");
+                continue;
+            }
+            String studentId = studentById.get(fold(row.studentId));
+            if (studentId == null) {
+                row.fail("invalid studentId");
+                continue;
+            }
+            row.studentId = studentId;
+            String key = fold(Grades.gradeKey(row.studentId, row.courseId, row.term));
+            if (!seen.add(key)) {
+                row.fail("duplicate row in upload");
+                continue;
+            }
+            row.encryptedId = existing.get(key);
+        }
+    }
+
+    //与MySQL默认排序规则一致：忽略大小写和尾部空格
+    private static String fold(String id) {
+        return id.stripTrailing().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * 每CHUNK_ROWS行一个事务批量写入；某块失败时退回逐行事务，保证逐行结果准确。
+     */
+    static void write(List<Row> rows) {
+        List<Row> pending = new ArrayList<>(CHUNK_ROWS);
+        for (Row row : rows) {
+            if (row.failed()) continue;
+            pending.add(row);
+            if (pending.size() == CHUNK_ROWS) {
+                writeChunk(pending);
+                pending.clear();
+            }
+        }
+        if (!pending.isEmpty()) {
+            writeChunk(pending);
+        }
+    }
+
+    private static void writeChunk(List<Row> chunk) {
+        List<String[]> updates = new ArrayList<>();
+        List<String[]> encInserts = new ArrayList<>();
+        List<String[]> gradeInserts = new ArrayList<>();
+        for (Row row : chunk) {
+            if (row.encryptedId != null) {
+                row.id = row.encryptedId;
+                updates.add(new String[]{row.grade, row.comments, row.encryptedId});
+            } else {
+                row.id = randomId();
+                String encId = randomId();
+                encInserts.add(new String[]{encId, row.grade, row.comments});
+                gradeInserts.add(new String[]{row.id, encId, row.studentId, row.courseId, row.term});
+            }
+        }
+        try {
+            DBConnect.dbConnector.inTransaction(tx -> {
+                tx.executeBatch(SqlTemplates.GRADE_ENC_UPDATE, updates);
+                tx.executeBatch(SqlTemplates.GRADE_ENC_INSERT, encInserts);
+                tx.executeBatch(SqlTemplates.GRADE_INSERT, gradeInserts);
+            });
+            for (Row row : chunk) {
+                row.status = row.encryptedId != null ? "updated" : "created";
+            }
+        } catch (SQLException chunkEx) {
+            for (Row row : chunk) {
+                writeSingle(row);
+            }
+        } finally {
+            for (Row row : chunk) {
+                ReportCache.invalidate(row.studentId);
+            }
+        }
+    }
+
+    private static void writeSingle(Row row) {
+        try {
+            if (row.encryptedId != null) {
+                DBConnect.dbConnector.executeUpdate(SqlTemplates.GRADE_ENC_UPDATE, new String[]{row.grade, row.comments, row.encryptedId});
+                row.status = "updated";
+            } else {
+                String encId = randomId();
+                DBConnect.dbConnector.inTransaction(tx -> {
+                    tx.executeUpdate(SqlTemplates.GRADE_ENC_INSERT, new String[]{encId, row.grade, row.comments});
+                    tx.executeUpdate(SqlTemplates.GRADE_INSERT, new String[]{row.id, encId, row.studentId, row.courseId, row.term});
+                });
+                row.status = "created";
+            }
+        } catch (SQLException e) {
+            row.id = null;
+            row.fail("write failed");
+        }
+    }
+
+    private static String randomId() {
+        return UUID.randomUUID().toString().replace("-", "").substring(0, 20);
+    }
+}
@@ -1,35 +1,53 @@
 package http;
 
+import app.Role;
+import app.Roles;
 import app.Session;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import service.DBConnect;
+import service.SqlTemplate;
+import service.SqlTemplates;
 import tables.Courses;
+import tables.ReportCache;
 import utils.AuditUtils;
 import utils.ParamValid;
 
-import java.sql.ResultSet;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
 @RestController
 public class GradeController {
     private Logger log = LoggerFactory.getLogger(GradeController.class);
+    private static final ObjectMapper JSON = new ObjectMapper();
+    private static final int EXPORT_FLUSH_ROWS = 500;
 
     @GetMapping(value = "/API/grades", produces = MediaType.APPLICATION_JSON_VALUE)
+    @Roles(Role.ARO)
     public Map<String, Object> getGradeList(@RequestParam(value = "studentId", required = false) String studentid,
                                             @RequestParam(value = "courseId", required = false) String courseID,
                                             @RequestParam(value = "courseName", required = false) String courseName,
@@ -62,31 +80,10 @@ public class GradeController {
         }
         //确认用户身份
         ArrayList<String> params = new ArrayList<>();
-        StringBuilder sql = new StringBuilder("SELECT g.id, g.encrypted_id, g.student_id, g.course_id, g.term, ge.grade, ge.comments, c.name, " +
-            "COALESCE(CONCAT_WS(' ', s.first_name, s.last_name), '') AS student_name " +
-            "FROM grades g JOIN grades_encrypted ge ON g.encrypted_id = ge.id " +
-            "LEFT JOIN courses c ON g.course_id = c.id " +
-            "LEFT JOIN students s ON g.student_id = s.id WHERE 1=1");
-        if(studentid != null && !studentid.isBlank()){
-            sql.append(" AND g.student_id = ?");
-            params.add(studentid);
-        }
-        if(courseID != null && !courseID.isBlank()){
-            sql.append(" AND g.course_id = ?");
-            params.add(courseID);
-        }
-        if(courseName != null && !courseName.isBlank()){
-            sql.append(" AND c.name LIKE ?");
-            params.add("%" + courseName.trim() + "%");
-        }
-        try(ResultSet rs = DBConnect.dbConnector.executeQuery(sql.toString(), params.toArray(new String[0]))){
+        try{
+            SqlTemplate template = gradeListTemplate(studentid, courseID, courseName, params);
             ArrayList<Map<String, Object>> gradeList = new ArrayList<>();
-            System.out.println(sql.toString());
-            while(rs.next()){
-                for(int i = 0; i<rs.getMetaData().getColumnCount(); i++){
-                    System.out.println(rs.getMetaData().getColumnLabel(i+1));
-                    System.out.println(rs.getString(rs.getMetaData().getColumnLabel(i+1)));
-                }
+            DBConnect.dbConnector.forEach(template, params.toArray(new String[0]), rs -> {
                 Map<String, Object> grade = new HashMap<>();
                 grade.put("id", rs.getString("id"));
                 String studentName = rs.getString("student_name");
@@ -95,9 +92,7 @@ public class GradeController {
                 }
                 grade.put("student_id", rs.getString("student_id"));
                 grade.put("course_id", rs.getString("course_id"));
-                System.err.println("???");
-                String cname = rs.getString("name");
-                System.err.println("!!!");
+                String cname = Courses.getName(rs.getString("course_id"));
                 if (cname != null && !cname.isBlank()) {
                     grade.put("course_name", cname);
                 }
@@ -105,7 +100,7 @@ public class GradeController {
                 grade.put("comments", rs.getString("comments"));
                 grade.put("term", rs.getString("term"));
                 gradeList.add(grade);
-            }
+            });
             resp.put("data", gradeList);
             resp.put("ok", true);
             log.info("audit={}", AuditUtils.pack("requestId", requestId, "message", "Grades Retrieved Successfully", "userID", session.getUserId()));
@@ -120,7 +115,152 @@ public class GradeController {
 
     }
 
+    //按过滤条件拼接成绩查询，GET /API/grades 与导出共用
+    //课程名过滤先在内存目录里解析成课程ID，不再JOIN courses
+    private static SqlTemplate gradeListTemplate(String studentid, String courseID, String courseName, List<String> params) throws SQLException {
+        StringBuilder templateName = new StringBuilder("grades.list");
+        StringBuilder sql = new StringBuilder("SELECT g.id, g.encrypted_id, g.student_id, g.course_id, g.term, ge.grade, ge.comments, " +
+            "COALESCE(CONCAT_WS(' ', s.first_name, s.last_name), '') AS student_name " +
+            "FROM grades g JOIN grades_encrypted ge ON g.encrypted_id = ge.id " +
+            "LEFT JOIN students s ON g.student_id = s.id WHERE 1=1");
+        if(studentid != null && !studentid.isBlank()){
+            sql.append(" AND g.student_id = ?");
+            params.add(studentid);
+            templateName.append(".student");
+        }
+        if(courseID != null && !courseID.isBlank()){
+            sql.append(" AND g.course_id = ?");
+            params.add(courseID);
+            templateName.append(".course");
+        }
+        if(courseName != null && !courseName.isBlank()){
+            List<String> courseIds = Courses.idsByNameContaining(courseName.trim());
+            if(courseIds.isEmpty()){
+                sql.append(" AND 1=0");
+            } else {
+                String[] padded = DBConnect.padInList(courseIds);
+                sql.append(" AND g.course_id IN (").append(DBConnect.placeholders(padded.length)).append(")");
+                params.addAll(Arrays.asList(padded));
+            }
+            templateName.append(".courseName");
+        }
+        SqlTemplate.Type[] types = new SqlTemplate.Type[params.size()];
+        Arrays.fill(types, SqlTemplate.Type.STRING);
+        return SqlTemplates.dynamic(templateName.toString(), sql.toString(), types);
+    }
+
+    /**
+     * 流式导出：游标逐行写出CSV/NDJSON，内存占用与匹配行数无关。过滤参数与 GET /API/grades 一致。
+     */
+    @GetMapping(value = "/API/grades/export")
+    @Roles(Role.ARO)
+    public ResponseEntity<?> exportGrades(@RequestParam(value = "studentId", required = false) String studentid,
+                                          @RequestParam(value = "courseId", required = false) String courseID,
+                                          @RequestParam(value = "courseName", required = false) String courseName,
+                                          @RequestParam(value = "format", required = false, defaultValue = "csv") String format,
+                                          HttpServletRequest request){
+        String rid = request.getHeader("X-Request-ID");
+        if (rid == null || rid.isBlank()) {
+            rid = UUID.randomUUID().toString();
+        }
+        final String requestId = rid;
+        Session session = (Session) request.getAttribute("session");
+        Map<String, Object> err = new HashMap<>();
+        if (session == null) {
+            err.put("error", "unauthorized");
+            err.put("code", 401);
+            log.warn("audit={}", AuditUtils.pack("requestId", requestId, "message", "unauthorized"));
+            return ResponseEntity.status(401).contentType(MediaType.APPLICATION_JSON).body(err);
+        }
+        String role = session.getRole();
+        if(!"ARO".equalsIgnoreCase(role)){
+            err.put("code",403);
+            err.put("message","Forbidden");
+            log.error("audit={}", AuditUtils.pack("requestId", requestId, "message", "Role Forbidden", "userID", session.getUserId()));
+            return ResponseEntity.status(403).contentType(MediaType.APPLICATION_JSON).body(err);
+        }
+        boolean ndjson = "ndjson".equalsIgnoreCase(format);
+        if(!ndjson && !"csv".equalsIgnoreCase(format)){
+            err.put("code",400);
+            err.put("message","Bad Request: Invalid Format");
+            log.error("audit={}", AuditUtils.pack("requestId", requestId, "message", "Invalid Export Format", "userID", session.getUserId()));
+            return ResponseEntity.status(400).contentType(MediaType.APPLICATION_JSON).body(err);
+        }
+        ArrayList<String> params = new ArrayList<>();
+        SqlTemplate template;
+        try{
+            template = gradeListTemplate(studentid, courseID, courseName, params);
+        } catch (SQLException e) {
+            err.put("code",500);
+            err.put("message","Internal Server Error");
+            log.error("audit={}", AuditUtils.pack("requestId", requestId, "message", "SQL Exception: " + e.getMessage(), "userID", session.getUserId()));
+            return ResponseEntity.status(500).contentType(MediaType.APPLICATION_JSON).body(err);
+        }
+        String[] paramArr = params.toArray(new String[0]);
+        String userId = session.getUserId();
+
+        StreamingResponseBody body = out -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 8192);
+            long[] rows = {0};
+            if (!ndjson) {
+                writer.write("id,student_id,student_name,course_id,course_name,term,grade,comments\n");
+            }
+            try {
+                DBConnect.dbConnector.stream(template, paramArr, rs -> {
+                    try {
+                        if (ndjson) {
+                            Map<String, Object> grade = new LinkedHashMap<>();
+                            grade.put("id", rs.getString("id"));
+                            grade.put("student_id", rs.getString("student_id"));
+                            grade.put("student_name", rs.getString("student_name"));
+                            grade.put("course_id", rs.getString("course_id"));
+                            grade.put("course_name", Courses.getName(rs.getString("course_id")));
+                            grade.put("term", rs.getString("term"));
+                            grade.put("grade", rs.getString("grade"));
+                            grade.put("comments", rs.getString("comments"));
+                            writer.write(JSON.writeValueAsString(grade));
+                        } else {
+                            writer.write(csvCell(rs.getString("id"))); writer.write(',');
+                            writer.write(csvCell(rs.getString("student_id"))); writer.write(',');
+                            writer.write(csvCell(rs.getString("student_name"))); writer.write(',');
+                            writer.write(csvCell(rs.getString("course_id"))); writer.write(',');
+                            writer.write(csvCell(Courses.getName(rs.getString("course_id")))); writer.write(',');
+                            writer.write(csvCell(rs.getString("term"))); writer.write(',');
+                            writer.write(csvCell(rs.getString("grade"))); writer.write(',');
+                            writer.write(csvCell(rs.getString("comments")));
+                        }
+                        writer.write('\n');
+                        if (++rows[0] % EXPORT_FLUSH_ROWS == 0) {
+                            writer.flush();
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                writer.flush();
+                log.info("audit={}", AuditUtils.pack("requestId", requestId, "message", "Grades Exported", "userID", userId, "rows", rows[0]));
+            } catch (UncheckedIOException e) {
+                log.warn("audit={}", AuditUtils.pack("requestId", requestId, "message", "Grade Export Aborted", "userID", userId, "rows", rows[0]));
+                throw e.getCause();
+            } catch (SQLException e) {
+                log.error("audit={}", AuditUtils.pack("requestId", requestId, "message", "SQL Exception: " + e.getMessage(), "userID", userId));
+                throw new IOException("grade export failed", e);
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(ndjson ? "application/x-ndjson;charset=UTF-8" : "text/csv;charset=UTF-8"))
+                .header("Content-Disposition", "attachment; filename=grades." + (ndjson ? "ndjson" : "csv"))
+                .body(body);
+    }
+
+    private static String csvCell(String v){
+        if (v == null) return "";
+        if (v.indexOf(',') < 0 && v.indexOf('"') < 0 && v.indexOf('\n') < 0 && v.indexOf('\r') < 0) return v;
+        return '"' + v.replace("\"", "\"\"") + '"';
+    }
+
     @PostMapping(value = "/API/grades", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    @Roles(Role.ARO)
     public Map<String,Object> postGrade(@RequestBody Map<String, Object> body, HttpServletRequest request, HttpServletResponse response){
         //基础信息
         String requestId = request.getHeader("X-Request-ID");
@@ -219,10 +359,10 @@ public class GradeController {
             return err;
         }
         
-        String studentSql = "SELECT COUNT(*) AS count FROM students WHERE id = ?";
         String[] studentParam = {studentID};
-        try(ResultSet rs = DBConnect.dbConnector.executeQuery(studentSql, studentParam)){
-            if(rs.next() && rs.getInt("count")==0){
+        try{
+            Integer studentCount = DBConnect.dbConnector.queryOne(SqlTemplates.STUDENT_COUNT, studentParam, rs -> rs.getInt("count"));
+            if(studentCount != null && studentCount==0){
                 err.put("code",400);
                 err.put("message","Bad Request: Invalid Student ID");
                 response.setStatus(400);
@@ -239,7 +379,6 @@ public class GradeController {
 
         }
         
-        String querySql = "SELECT id, encrypted_id FROM grades WHERE student_id = ? AND course_id = ? AND term = ?";
         String[] queryParam = {studentID, courseID, term};
         String comment = body.get("comments")==null? "": body.get("comments").toString();
         if(comment == null || comment.isBlank()){
@@ -252,17 +391,18 @@ public class GradeController {
             log.error("audit={}", AuditUtils.pack("requestId", requestId, "message", "Invalid Comments", "userID", session.getUserId()));
             return err;
         }
-        try(ResultSet rs = DBConnect.dbConnector.executeQuery(querySql, queryParam)){
-            if(!rs.next()){//没有对应成绩记录，创建
+        try{
+            String existingEncId = DBConnect.dbConnector.queryOne(SqlTemplates.GRADE_FIND, queryParam, rs -> rs.getString("encrypted_id"));
+            if(existingEncId == null){//没有对应成绩记录，创建
                 String gid = UUID.randomUUID().toString().replace("-", "").substring(0, 20);
                 String enc_gid = UUID.randomUUID().toString().replace("-", "").substring(0, 20);
-                String insertGradeSql = "INSERT INTO grades (id,encrypted_id, student_id, course_id, term) VALUES (?, ?, ?, ?, ?)";
-                String insertEncSql = "INSERT INTO grades_encrypted (id, grade, comments) VALUES (?, ?, ?)";
                 String[] insertGradeParam = {gid, enc_gid, studentID, courseID, term};
                 String[] insertEncParam = {enc_gid, grade, comment};
-                try{//创建，先写加密表再写明文
-                    DBConnect.dbConnector.executeUpdate(insertEncSql, insertEncParam);
-                    DBConnect.dbConnector.executeUpdate(insertGradeSql, insertGradeParam);
+                try{//创建，先写加密表再写明文，同一事务提交
+                    DBConnect.dbConnector.inTransaction(tx -> {
+                        tx.executeUpdate(SqlTemplates.GRADE_ENC_INSERT, insertEncParam);
+                        tx.executeUpdate(SqlTemplates.GRADE_INSERT, insertGradeParam);
+                    });
                     response.setStatus(201);
                     resp.put("ok", true);
                     resp.put("message", "Grade Record Created Successfully");
@@ -270,12 +410,6 @@ public class GradeController {
                     log.info("audit={}", AuditUtils.pack("requestId", requestId, "message", "Grade Record Created Successfully", "userID", session.getUserId()));
                 }
                 catch (SQLException e){
-                    // 如果第二步失败,rollback
-                    try {
-                        DBConnect.dbConnector.executeUpdate("DELETE FROM grades_encrypted WHERE id = ?", new String[]{enc_gid});
-                    } catch (SQLException rollbackIgnored) {
-                        log.warn("audit={}", AuditUtils.pack("requestId", requestId, "message", "rollback failed", "userID", session.getUserId(), "error", rollbackIgnored.getMessage()));
-                    }
                     err.put("code",500);
                     response.setStatus(500);
                     err.put("message","Internal Server Error");
@@ -284,11 +418,10 @@ public class GradeController {
                 }
             }
             else{//有记录，更新
-                String gid = rs.getString("encrypted_id");
-                String updateSql = "UPDATE grades_encrypted SET grade = ?, comments = ? WHERE id = ?";
+                String gid = existingEncId;
                 String[] updateParam = {grade, comment, gid};
                 try{
-                    DBConnect.dbConnector.executeUpdate(updateSql, updateParam);
+                    DBConnect.dbConnector.executeUpdate(SqlTemplates.GRADE_ENC_UPDATE, updateParam);
                     resp.put("ok", true);
                     resp.put("message", "Grade Record Updated Successfully");
                     resp.put("id",gid);
@@ -311,12 +444,16 @@ public class GradeController {
             log.error("audit={}", AuditUtils.pack("requestId", requestId, "message", "SQL Exception: " + e.getMessage(), "userID", session.getUserId()));
             return err;
         }
+        finally {
+            ReportCache.invalidate(studentID);
+        }
 
         
         return resp;
     }
 
     @DeleteMapping(value = "/API/grades")
+    @Roles(Role.ARO)
     public Map<String, Object> deleteGrade(@RequestBody Map<String, Object> body, HttpServletRequest request, HttpServletResponse response){
         //基础信息
         String requestId = request.getHeader("X-Request-ID");
@@ -354,18 +491,18 @@ public class GradeController {
             return err;
         }
 
-        String querySql = "SELECT encrypted_id FROM grades WHERE id = ?";
         String[] queryParam = {gradeID};
-        try(ResultSet rs = DBConnect.dbConnector.executeQuery(querySql, queryParam)){
-            if(rs.next()){
-                String encId = rs.getString("encrypted_id");
-                String deleteGradeSql = "DELETE FROM grades WHERE id = ?";
-                String deleteEncSql = "DELETE FROM grades_encrypted WHERE id = ?";
+        try{
+            String[] found = DBConnect.dbConnector.queryOne(SqlTemplates.GRADE_ENC_ID, queryParam, rs -> new String[]{rs.getString("encrypted_id"), rs.getString("student_id")});
+            if(found != null){
+                String encId = found[0];
                 try{
-                    DBConnect.dbConnector.executeUpdate(deleteGradeSql, new String[]{gradeID});
-                    if(encId != null && !encId.isBlank()){
-                        DBConnect.dbConnector.executeUpdate(deleteEncSql, new String[]{encId});
-                    }
+                    DBConnect.dbConnector.inTransaction(tx -> {
+                        tx.executeUpdate(SqlTemplates.GRADE_DELETE, new String[]{gradeID});
+                        if(encId != null && !encId.isBlank()){
+                            tx.executeUpdate(SqlTemplates.GRADE_ENC_DELETE, new String[]{encId});
+                        }
+                    });
                     resp.put("ok", true);
                     resp.put("message", "Grade Record Deleted Successfully");
                     log.warn("audit={}", AuditUtils.pack("requestId", requestId, "userID", session.getUserId(), "message", "Grade Record Deleted Successfully"));//敏感操作
@@ -376,6 +513,8 @@ public class GradeController {
                     err.put("message","Internal Server Error");
                     log.error("audit={}", AuditUtils.pack("requestId", requestId, "message", "SQL Exception: " + e.getMessage(), "userID", session.getUserId()));
                     return err;
+                } finally {
+                    ReportCache.invalidate(found[1]);
                 }
             } else {
                 err.put("code",404);
@@ -395,4 +534,92 @@ public class GradeController {
 
         
     }
+
+    //批量上传成绩：text/csv 或 application/x-ndjson，一次请求返回逐行结果
+    @PostMapping(value = "/API/grades/bulk", consumes = {"text/csv", "application/x-ndjson"}, produces = MediaType.APPLICATION_JSON_VALUE)
+    @Roles(Role.ARO)
+    public Map<String, Object> bulkUploadGrades(HttpServletRequest request, HttpServletResponse response){
+        String requestId = request.getHeader("X-Request-ID");
+        if (requestId == null || requestId.isBlank()) {
+            requestId = UUID.randomUUID().toString();
+        }
+        Session session = (Session) request.getAttribute("session");
+        Map<String, Object> err = new HashMap<>();
+        Map<String, Object> resp = new HashMap<>();
+        if (session == null) {
+            err.put("error", "unauthorized");
+            err.put("code", 401);
+            response.setStatus(401);
+            log.warn("audit={}", AuditUtils.pack("requestId", requestId, "message", "unauthorized"));
+            return err;
+        }
+
+        String role = session.getRole();
+        if(!"ARO".equalsIgnoreCase(role)){
+            err.put("code",403);
+            response.setStatus(403);
+            err.put("message","Forbidden");
+            log.error("audit={}", AuditUtils.pack("requestId", requestId, "message", "Role Forbidden", "userID", session.getUserId()));
+            return err;
+        }
+
+        List<GradeBulkUpload.Row> rows;
+        try{
+            rows = GradeBulkUpload.isCsv(request.getContentType())
+                    ? GradeBulkUpload.parseCsv(request.getReader())
+                    : GradeBulkUpload.parseNdjson(request.getReader());
+        }
+        catch (GradeBulkUpload.TooManyRowsException e){
+            err.put("code",413);
+            err.put("message","Payload Too Large: at most " + GradeBulkUpload.MAX_ROWS + " rows");
+            response.setStatus(413);
+            log.error("audit={}", AuditUtils.pack("requestId", requestId, "message", "Bulk Upload Too Many Rows", "userID", session.getUserId()));
+            return err;
+        }
+        catch (IOException e){
+            err.put("code",400);
+            err.put("message","Bad Request: Unreadable Body");
+            response.setStatus(400);
+            log.error("audit={}", AuditUtils.pack("requestId", requestId, "message", "Bulk Upload Unreadable: " + e.getMessage(), "userID", session.getUserId()));
+            return err;
+        }
+        if(rows.isEmpty()){
+            err.put("code",400);
+            err.put("message","Bad Request: No Rows");
+            response.setStatus(400);
+            log.error("audit={}", AuditUtils.pack("requestId", requestId, "message", "Bulk Upload Empty", "userID", session.getUserId()));
+            return err;
+        }
+
+        GradeBulkUpload.validate(rows);
+        try{
+            GradeBulkUpload.resolve(rows);
+        }
+        catch (SQLException e){
+            err.put("code",500);
+            err.put("message","Internal Server Error");
+            response.setStatus(500);
+            log.error("audit={}", AuditUtils.pack("requestId", requestId, "message", "SQL Exception: " + e.getMessage(), "userID", session.getUserId()));
+            return err;
+        }
+        GradeBulkUpload.write(rows);
+
+        int created = 0, updated = 0, failed = 0;
+        List<Map<String, Object>> results = new ArrayList<>(rows.size());
+        for (GradeBulkUpload.Row row : rows) {
+            if ("created".equals(row.status)) created++;
+            else if ("updated".equals(row.status)) updated++;
+            else failed++;
+            results.add(row.toReport());
+        }
+        resp.put("ok", failed == 0);
+        resp.put("total", rows.size());
+        resp.put("created", created);
+        resp.put("updated", updated);
+        resp.put("failed", failed);
+        resp.put("results", results);
+        log.info("audit={}", AuditUtils.pack("requestId", requestId, "message", "Bulk Grade Upload", "userID", session.getUserId(),
+                "total", rows.size(), "created", created, "updated", updated, "failed", failed));
+        return resp;
+    }
 }
@@ -1,5 +1,6 @@
 package http;
 
+import app.PublicRoute;
 import app.SessionStore;
 import jakarta.servlet.http.Cookie;
 import jakarta.servlet.http.HttpServletRequest;
@@ -19,6 +20,7 @@ public class LogoutController {
     private SessionStore sessionStore;
 
     @PostMapping(value = "/API/logout", produces = MediaType.APPLICATION_JSON_VALUE)
+    @PublicRoute
     public Map<String, Object> logout(HttpServletRequest request, HttpServletResponse response) {
         String sid = readSidCookie(request);
         if (sid != null) {
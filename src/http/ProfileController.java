@@ -1,5 +1,7 @@
 package http;
 
+import app.Role;
+import app.Roles;
 import app.Session;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
@@ -25,6 +27,7 @@ import java.util.UUID;
 import java.util.Set;
 import service.DBConnect;
 import utils.ParamValid;
+import utils.PasswordHasher;
 import org.springframework.beans.factory.annotation.Autowired;
 import app.SessionStore;
 
@@ -33,7 +36,10 @@ public class ProfileController {
     private static final Logger log = LoggerFactory.getLogger(ProfileController.class.getName());
     @Autowired
     private SessionStore sessionStore;
+    @Autowired
+    private PasswordHasher passwordHasher;
     @GetMapping(value = "/API/profile", produces = MediaType.APPLICATION_JSON_VALUE)
+    @Roles({Role.STUDENT, Role.GUARDIAN, Role.ARO, Role.DRO})
     public Map<String, Object> profile(HttpServletRequest request, HttpServletResponse response) {
         String requestId = request.getHeader("X-Request-ID");
         if (requestId == null || requestId.isBlank()) {
@@ -162,6 +168,7 @@ public class ProfileController {
     }
 
     @PutMapping(value = "/API/profile", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    @Roles({Role.STUDENT, Role.GUARDIAN, Role.ARO, Role.DRO})
     public Map<String, Object> updateProfile(@RequestBody Map<String, Object> body, HttpServletRequest request, HttpServletResponse response) {
         String requestId = request.getHeader("X-Request-ID");
         if (requestId == null || requestId.isBlank()) {
@@ -239,7 +246,12 @@ public class ProfileController {
             log.error("audit={}", AuditUtils.pack("requestId", requestId, "userId", session.getUserId(), "role", role, "emailMasked", SecurityUtils.maskEmail(session.getEmail()), "error", "SQL_EXCEPTION","errorMessage",e.getMessage()));
             return resp;
         }
-        String passwdHash = SecurityUtils.getPasswdHash(password, salt);
+        String passwdHash;
+        try {
+            passwdHash = passwordHasher.hash(password, salt);
+        } catch (PasswordHasher.BusyException e) {
+            return busy(resp, response, requestId, session, e);
+        }
         try {//先验证是本人
             boolean check = User.checkLogin(session.getUserId(), passwdHash, session.getRole());
             if(!check){
@@ -345,6 +357,7 @@ public class ProfileController {
     }
 
     @PutMapping(value = "/API/modified_Passowrd", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    @Roles({Role.STUDENT, Role.GUARDIAN, Role.ARO, Role.DRO})
     public Map<String, Object> modifyPassword(@RequestBody Map<String, Object> body, HttpServletRequest request, HttpServletResponse response) {
         String requestId = request.getHeader("X-Request-ID");
         if (requestId == null || requestId.isBlank()) {
@@ -414,7 +427,12 @@ public class ProfileController {
             log.error("audit={}", AuditUtils.pack("requestId", requestId, "userId", session.getUserId(), "role", role, "emailMasked", SecurityUtils.maskEmail(session.getEmail()), "error", "SQL_EXCEPTION","errorMessage",e.getMessage()));
             return resp;
         }
-        String oldPassHash = SecurityUtils.getPasswdHash(oldPassword,salt);
+        String oldPassHash;
+        try {
+            oldPassHash = passwordHasher.hash(oldPassword, salt);
+        } catch (PasswordHasher.BusyException e) {
+            return busy(resp, response, requestId, session, e);
+        }
         try{
             boolean result = User.checkLogin(session.getUserId(),oldPassHash,session.getRole());
             if(!result){
@@ -425,12 +443,17 @@ public class ProfileController {
                 return resp;
             }
             String new_salt = SecurityUtils.generateSalt();
-            String newPassHash = SecurityUtils.getPasswdHash(newPassword, new_salt);
+            String newPassHash;
+            try {
+                newPassHash = passwordHasher.hash(newPassword, new_salt);
+            } catch (PasswordHasher.BusyException e) {
+                return busy(resp, response, requestId, session, e);
+            }
             HashMap<String,String> update = new HashMap<>();
             update.put("password_hash",newPassHash);
             update.put("salt", new_salt);
             user.updateInfo(update);
-            sessionStore.invalidate(session.getSid());
+            sessionStore.invalidateUser(session.getRole(), session.getUserId());//其他设备上的会话一并失效
             response.addHeader("Set-Cookie", "sid=; Path=/; HttpOnly; SameSite=Lax; Max-Age=0");
             resp.put("ok",true);
             resp.put("message","Password updated");
@@ -445,23 +468,30 @@ public class ProfileController {
             return resp;
         }
     }
+    //哈希线程池已满：503 快速失败
+    private Map<String, Object> busy(Map<String, Object> resp, HttpServletResponse response, String requestId, Session session, PasswordHasher.BusyException e) {
+        resp.put("ok", false);
+        resp.put("message", "server busy, retry later");
+        response.setStatus(503);
+        response.addHeader("Retry-After", "1");
+        log.warn("audit={}", AuditUtils.pack("requestId", requestId, "userId", session.getUserId(), "role", session.getRole(), "emailMasked", SecurityUtils.maskEmail(session.getEmail()), "message", "password hashing rejected: " + e.getMessage()));
+        return resp;
+    }
     private String querySalt(String userId, String role) throws SQLException {
         String table;
         if ("student".equalsIgnoreCase(role)) {
-            table = "students_encrypted";
+            table = "students";
         } else if ("guardian".equalsIgnoreCase(role)) {
-            table = "guardians_encrypted";
+            table = "guardians";
         } else if ("ARO".equalsIgnoreCase(role) || "DRO".equalsIgnoreCase(role)) {
-            table = "staffs_encrypted";
+            table = "staffs";
         } else {
             throw new SQLException("invalid role");
         }
-        ResultSet rs = DBConnect.dbConnector.executeQuery(
-                "SELECT salt FROM " + table + " WHERE id = ?",
-                new String[]{userId}
-        );
-        if (rs.next()) {
-            return rs.getString("salt");
+        //与 User.checkLogin 比较的哈希同取自数据库，避免缓存中的旧盐
+        tables.Principals.Credentials c = tables.Principals.findCredentials(table, userId);
+        if (c != null) {
+            return c.salt();
         } else {
             throw new SQLException("user not found");
         }
@@ -1,24 +1,26 @@
 package http;
 
+import app.Role;
+import app.Roles;
 import app.Session;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RestController;
-import service.DBConnect;
-import tables.Disciplinary;
-import tables.Grades;
+import tables.ReportCache;
+import tables.Reports;
+import tables.Students;
 import users.Guardian;
 import users.Student;
 import users.User;
 import utils.AuditUtils;
 
-import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.*;
 
@@ -26,7 +28,11 @@ import java.util.*;
 public class ReportController {
 
     private Logger log = LoggerFactory.getLogger(ReportController.class);
+    //单次报告请求内所有查询的截止时间
+    @Value("${app.report.deadline-ms:3000}")
+    private long deadlineMillis = 3000;
     @RequestMapping(value = "/API/reports", method = {RequestMethod.GET, RequestMethod.POST}, produces = MediaType.APPLICATION_JSON_VALUE)
+    @Roles({Role.STUDENT, Role.GUARDIAN})
     public Map<String, Object> queryInfo(HttpServletRequest request, HttpServletResponse response){
         String requestId = request.getHeader("X-Request-ID");
         if (requestId == null || requestId.isBlank()) {
@@ -53,10 +59,9 @@ public class ReportController {
         else if("guardian".equalsIgnoreCase(role)){
             //监护人和学生关系
             user = new Guardian(session.getUserId());
-            String sql = "SELECT id FROM students_encrypted WHERE guardian_id=?";
-            String[] param = {session.getUserId()};
-            try(ResultSet rs = DBConnect.dbConnector.executeQuery(sql,param)){
-                if(!rs.next()){
+            try{
+                studentIds.addAll(Students.getIdsByGuardian(session.getUserId()));
+                if(studentIds.isEmpty()){
                     err.put("error", "NotFound");
                     err.put("code", 404);
                     err.put("message", "No student found");
@@ -64,10 +69,6 @@ public class ReportController {
                     response.setStatus(404);
                     return err;
                 }
-                do{
-                    studentIds.add(rs.getString("id"));
-                } while(rs.next());
-
             }catch(SQLException e){
                 err.put("error", "QueryError");
                 err.put("code", 500);
@@ -85,28 +86,41 @@ public class ReportController {
             log.warn("audit={}", AuditUtils.pack("requestId", requestId, "message", "InvalidRole", "userID", session.getUserId()));
             return err;
         }
-        //获取到了学生ID，查询成绩和纪律
+        //获取到了学生ID，成绩和纪律按学生集合并发批量查询，失败按学生汇总
         List<Map<String, Object>> results = new ArrayList<>();
-        for(String id: studentIds){
+        List<String> failedIds = new ArrayList<>();
+        for(Reports.StudentReport report : ReportCache.get(studentIds, deadlineMillis)){
+            //报告可能来自缓存，复制后再去掉student_id
             Map<String, Object> result = new HashMap<>();
-            try {
-                ArrayList<HashMap<String,String>> grade, disciplinary;
-                grade = Grades.getStudentGrades(id);
-                for (HashMap<String,String> m : grade) { m.remove("student_id"); }
-                disciplinary = Disciplinary.getStudentDisciplinary(id);
-                for (HashMap<String,String> m : disciplinary) { m.remove("student_id"); }
-                result.put("grade",grade);
-                result.put("disciplinary",disciplinary);
-                results.add(result);
-
-            } catch (SQLException e) {
+            ArrayList<HashMap<String,String>> grade = new ArrayList<>(), disciplinary = new ArrayList<>();
+            for (HashMap<String,String> m : report.grades) {
+                HashMap<String,String> copy = new HashMap<>(m);
+                copy.remove("student_id");
+                grade.add(copy);
+            }
+            for (HashMap<String,String> m : report.disciplinary) {
+                HashMap<String,String> copy = new HashMap<>(m);
+                copy.remove("student_id");
+                disciplinary.add(copy);
+            }
+            result.put("grade",grade);
+            result.put("disciplinary",disciplinary);
+            if(!report.isComplete()){
+                result.put("errors",report.errors);
+                failedIds.add(report.studentId);
+            }
+            results.add(result);
+        }
+        if(!failedIds.isEmpty()){
+            log.warn("audit={}", AuditUtils.pack("requestId", requestId, "message", "ReportQueryError", "studentIds", failedIds, "userID", session.getUserId()));
+            if(failedIds.size() == results.size()){
                 err.put("error", "QueryError");
                 err.put("code",500);
                 response.setStatus(500);
                 err.put("message","Query failed");
-                log.warn("audit={}", AuditUtils.pack("requestId", requestId, "message", "ReportQueryError", "studentId", id, "userID", session.getUserId()));
                 return err;
             }
+            resp.put("partial",true);
         }
         resp.put("ok",true);
         resp.put("data",results);
@@ -5,11 +5,14 @@ import org.springframework.boot.WebApplicationType;
 import org.springframework.boot.builder.SpringApplicationBuilder;
 import org.springframework.context.ConfigurableApplicationContext;
 import service.DBConnect;
+import service.SqlTemplates;
 import utils.SecurityUtils;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
@@ -50,7 +53,7 @@ public class TestAccountSeeder {
         String salt = SecurityUtils.generateSalt();
         System.out.println("  - Creating student " + account.email);
         DBConnect.dbConnector.executeUpdate(
-                "INSERT INTO students (id, last_name, first_name, enrollment_year) VALUES (?, ?, ?, ?)",
+                SqlTemplates.STUDENT_INSERT,
                 new String[]{id, account.lastName, account.firstName, "2024"}
         );
         DBConnect.dbConnector.executeUpdate(
@@ -156,33 +159,31 @@ public class TestAccountSeeder {
                 new GradeData("MATH201", "2024Sem1", "A-", "Solid understanding"),
                 new GradeData("SEC301", "2024Sem1", "A", "Great progress")
         };
+        List<String[]> updates = new ArrayList<>();
+        List<String[]> encInserts = new ArrayList<>();
+        List<String[]> gradeInserts = new ArrayList<>();
         for (GradeData g : grades) {
             if (!courseIds.containsKey(g.courseId())) continue;
-            ResultSet rs = DBConnect.dbConnector.executeQuery(
-                    "SELECT id, encrypted_id FROM grades WHERE student_id = ? AND course_id = ? AND term = ?",
-                    new String[]{studentId, g.courseId(), g.term()}
-            );
-            if (rs.next()) {
-                String encryptedId = rs.getString("encrypted_id");
-                DBConnect.dbConnector.executeUpdate(
-                        "UPDATE grades_encrypted SET grade = ?, comments = ? WHERE id = ?",
-                        new String[]{g.grade(), g.comments(), encryptedId}
-                );
+            String encryptedId = DBConnect.dbConnector.queryOne(SqlTemplates.GRADE_FIND,
+                    new String[]{studentId, g.courseId(), g.term()},
+                    rs -> rs.getString("encrypted_id"));
+            if (encryptedId != null) {
+                updates.add(new String[]{g.grade(), g.comments(), encryptedId});
                 System.out.println("  - Updating grade " + g.courseId());
             } else {
                 String gradeId = randomId();
-                String encryptedId = randomId();
-                DBConnect.dbConnector.executeUpdate(
-                        "INSERT INTO grades_encrypted (id, grade, comments) VALUES (?, ?, ?)",
-                        new String[]{encryptedId, g.grade(), g.comments()}
-                );
-                DBConnect.dbConnector.executeUpdate(
-                        "INSERT INTO grades (id, encrypted_id, student_id, course_id, term) VALUES (?, ?, ?, ?, ?)",
-                        new String[]{gradeId, encryptedId, studentId, g.courseId(), g.term()}
-                );
+                String newEncryptedId = randomId();
+                encInserts.add(new String[]{newEncryptedId, g.grade(), g.comments()});
+                gradeInserts.add(new String[]{gradeId, newEncryptedId, studentId, g.courseId(), g.term()});
                 System.out.println("  - Create grade " + g.courseId());
             }
         }
+        //加密表先于明文表写入（外键），整组一次提交
+        DBConnect.dbConnector.inTransaction(tx -> {
+            tx.executeBatch(SqlTemplates.GRADE_ENC_UPDATE, updates);
+            tx.executeBatch(SqlTemplates.GRADE_ENC_INSERT, encInserts);
+            tx.executeBatch(SqlTemplates.GRADE_INSERT, gradeInserts);
+        });
     }
 
     private static void seedDisciplinary(String studentId, String staffId) throws SQLException {
@@ -192,6 +193,8 @@ public class TestAccountSeeder {
                 new Disciplinary("2024-03-10", "Late submission warning"),
                 new Disciplinary("2024-04-18", "Missed mandatory workshop")
         };
+        List<String[]> recordRows = new ArrayList<>();
+        List<String[]> encRows = new ArrayList<>();
         for (Disciplinary rec : records) {
             ResultSet rs = DBConnect.dbConnector.executeQuery(
                     "SELECT id FROM disciplinary_records WHERE student_id = ? AND date = ?",
@@ -202,16 +205,14 @@ public class TestAccountSeeder {
                 continue;
             }
             String rid = randomId();
-            DBConnect.dbConnector.executeUpdate(
-                    "INSERT INTO disciplinary_records (id, student_id, date, staff_id) VALUES (?, ?, ?, ?)",
-                    new String[]{rid, studentId, rec.date(), staffId}
-            );
-            DBConnect.dbConnector.executeUpdate(
-                    "INSERT INTO disciplinary_records_encrypted (id, descriptions) VALUES (?, ?)",
-                    new String[]{rid, rec.description()}
-            );
+            recordRows.add(new String[]{rid, studentId, rec.date(), staffId});
+            encRows.add(new String[]{rid, rec.description()});
             System.out.println("  - Creating disciplinary record " + rec.date());
         }
+        DBConnect.dbConnector.inTransaction(tx -> {
+            tx.executeBatch(SqlTemplates.DISCIPLINARY_INSERT, recordRows);
+            tx.executeBatch(SqlTemplates.DISCIPLINARY_ENC_INSERT, encRows);
+        });
     }
 
     private static boolean exists(String table, String email) throws SQLException {
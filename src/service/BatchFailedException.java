@@ -0,0 +1,31 @@
+package service;
+
+import java.sql.SQLException;
+
+/**
+ * 分批执行中途失败：失败批 [fromRow, toRow) 已回滚，之前各批（以及失败批中逐行重放已提交的行）不会回滚。
+ * getPartialResult() 中下标小于 fromRow 的行结果有效。
+ */
+public class BatchFailedException extends SQLException {
+    private final int fromRow;
+    private final int toRow;
+    private final int committedRows;
+    private final BatchResult partialResult;
+
+    BatchFailedException(int fromRow, int toRow, int committedRows, BatchResult partialResult, Throwable cause) {
+        super("Batch failed at rows [%d, %d); %d earlier rows already committed: %s"
+                        .formatted(fromRow, toRow, committedRows, cause.getMessage()),
+                cause instanceof SQLException e ? e.getSQLState() : null,
+                cause instanceof SQLException e ? e.getErrorCode() : 0,
+                cause);
+        this.fromRow = fromRow;
+        this.toRow = toRow;
+        this.committedRows = committedRows;
+        this.partialResult = partialResult;
+    }
+
+    public int getFromRow() { return fromRow; }
+    public int getToRow() { return toRow; }
+    public int getCommittedRows() { return committedRows; }
+    public BatchResult getPartialResult() { return partialResult; }
+}
@@ -0,0 +1,44 @@
+package service;
+
+import java.sql.Statement;
+
+/**
+ * executeBatch的逐行结果：下标与传入的参数行一一对应。
+ * 开启rewriteBatchedStatements时成功行的计数可能是Statement.SUCCESS_NO_INFO。
+ */
+public class BatchResult {
+    private final int[] updateCounts;
+    private final String[] errors;
+
+    BatchResult(int size) {
+        this.updateCounts = new int[size];
+        this.errors = new String[size];
+    }
+
+    void success(int row, int count) {
+        updateCounts[row] = count;
+        errors[row] = null;
+    }
+
+    void failure(int row, String message) {
+        updateCounts[row] = Statement.EXECUTE_FAILED;
+        errors[row] = message == null ? "failed" : message;
+    }
+
+    public int size() { return updateCounts.length; }
+    public boolean isSuccess(int row) { return errors[row] == null; }
+    public int getUpdateCount(int row) { return updateCounts[row]; }
+    public String getError(int row) { return errors[row]; }
+
+    public int successCount() {
+        int n = 0;
+        for (String e : errors) {
+            if (e == null) n++;
+        }
+        return n;
+    }
+
+    public int failureCount() {
+        return size() - successCount();
+    }
+}
@@ -0,0 +1,153 @@
+package service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * courses 表的内存目录：启动时整表载入为不可变快照，之后定时比对指纹，表有变化才重新载入并整体替换。
+ * 课程ID与名称的匹配都与MySQL默认排序规则一致（忽略大小写和末尾空格）。
+ */
+@Service
+public class CourseCatalog {
+    public static CourseCatalog catalog;
+
+    //id -> name；lower(name) -> 最小的id；lower(name) -> 该名称下所有id（前缀查找用）
+    private record Snapshot(long fingerprint, Map<String, String> nameById, Map<String, String> idByName,
+                            NavigableMap<String, List<String>> idsByName) {}
+
+    private static final String FINGERPRINT_SQL =
+            "SELECT COUNT(*) AS n, COALESCE(BIT_XOR(CRC32(CONCAT_WS(0x00, id, name))), 0) AS h FROM courses";
+
+    private volatile Snapshot snapshot;
+
+    @Autowired
+    public void setSelf() {
+        catalog = this;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        try {
+            refresh();
+        } catch (SQLException e) {
+            //启动时数据库不可用：首次查找时再载入
+            System.out.println("Error: failed to load course catalog: " + e.getMessage());
+        }
+    }
+
+    //只查指纹，表没变就保留现有快照
+    @Scheduled(fixedDelayString = "${app.courses.refresh-ms:60000}", initialDelayString = "${app.courses.refresh-ms:60000}")
+    public void scheduledRefresh() {
+        try {
+            refresh();
+        } catch (SQLException e) {
+            System.out.println("Error: failed to refresh course catalog: " + e.getMessage());
+        }
+    }
+
+    public synchronized void refresh() throws SQLException {
+        Long fingerprint = DBConnect.dbConnector.queryOne(FINGERPRINT_SQL, new String[0],
+                rs -> rs.getLong("n") * 31 + rs.getLong("h"));
+        Snapshot current = snapshot;
+        if (current != null && fingerprint != null && current.fingerprint() == fingerprint) {
+            return;
+        }
+        //与 WHERE id = ? 一致，课程ID忽略大小写
+        Map<String, String> nameById = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        Map<String, String> idByName = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        TreeMap<String, List<String>> idsByName = new TreeMap<>();
+        DBConnect.dbConnector.forEach("SELECT id, name FROM courses ORDER BY id", new String[0], rs -> {
+            String id = rs.getString("id");
+            String key = key(rs.getString("name"));
+            nameById.put(id, rs.getString("name"));
+            idByName.putIfAbsent(key, id);
+            idsByName.computeIfAbsent(key, k -> new ArrayList<>()).add(id);
+        });
+        idsByName.replaceAll((k, v) -> List.copyOf(v));
+        snapshot = new Snapshot(fingerprint == null ? 0 : fingerprint,
+                Collections.unmodifiableMap(nameById), Collections.unmodifiableMap(idByName),
+                Collections.unmodifiableNavigableMap(idsByName));
+    }
+
+    private Snapshot snapshot() throws SQLException {
+        Snapshot s = snapshot;
+        if (s == null) {
+            refresh();
+            s = snapshot;
+        }
+        return s;
+    }
+
+    private static String key(String name) {
+        return name == null ? "" : name.stripTrailing().toLowerCase(Locale.ROOT);
+    }
+
+    public String getName(String courseID) throws SQLException {
+        return courseID == null ? null : snapshot().nameById().get(courseID.stripTrailing());
+    }
+
+    public String getIdByName(String courseName) throws SQLException {
+        return courseName == null ? null : snapshot().idByName().get(key(courseName));
+    }
+
+    public Map<String, String> getIdsByName(Collection<String> courseNames) throws SQLException {
+        Map<String, String> idByName = snapshot().idByName();
+        Map<String, String> found = new HashMap<>();
+        for (String name : courseNames) {
+            String id = name == null ? null : idByName.get(key(name));
+            if (id != null) {
+                found.put(name, id);
+            }
+        }
+        return found;
+    }
+
+    public Set<String> existingIds(Collection<String> courseIDs) throws SQLException {
+        Map<String, String> nameById = snapshot().nameById();
+        Set<String> found = new HashSet<>();
+        for (String id : courseIDs) {
+            if (id != null && nameById.containsKey(id.stripTrailing())) {
+                found.add(id);
+            }
+        }
+        return found;
+    }
+
+    //名称以prefix开头的课程ID（忽略大小写）
+    public List<String> idsByNamePrefix(String prefix) throws SQLException {
+        String p = prefix.toLowerCase(Locale.ROOT);
+        List<String> ids = new ArrayList<>();
+        for (List<String> v : snapshot().idsByName().subMap(p, true, p + Character.MAX_VALUE, false).values()) {
+            ids.addAll(v);
+        }
+        return ids;
+    }
+
+    //名称包含part的课程ID（忽略大小写），等价于 name LIKE '%part%'
+    public List<String> idsByNameContaining(String part) throws SQLException {
+        String p = part.toLowerCase(Locale.ROOT);
+        List<String> ids = new ArrayList<>();
+        for (Map.Entry<String, List<String>> e : snapshot().idsByName().entrySet()) {
+            if (e.getKey().contains(p)) {
+                ids.addAll(e.getValue());
+            }
+        }
+        return ids;
+    }
+}
@@ -2,15 +2,26 @@ package service;
 
 import javax.sql.DataSource;
 import javax.sql.rowset.CachedRowSet;
+import javax.sql.rowset.RowSetFactory;
 import javax.sql.rowset.RowSetProvider;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.sql.BatchUpdateException;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Service
 public class DBConnect {
@@ -18,9 +29,26 @@ public class DBConnect {
     @Autowired
     private DataSource dataSource;
 
-    
+
     public static DBConnect dbConnector;
 
+    //每批语句数，每批单独提交
+    @Value("${app.db.batch-size:500}")
+    private int batchSize = 500;
+
+    //RowSetFactory 线程安全，只创建一次
+    private static final RowSetFactory ROW_SET_FACTORY;
+    static {
+        try {
+            ROW_SET_FACTORY = RowSetProvider.newFactory();
+        } catch (SQLException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    //物理连接 -> 已在该连接上预编译过的模板，驱动的服务端语句缓存同样按物理连接划分
+    private static final Map<Connection, Set<String>> PREPARED_ON = Collections.synchronizedMap(new WeakHashMap<>());
+
     @Autowired
     public void setSelf() {
         dbConnector = this;
@@ -39,14 +67,292 @@ public class DBConnect {
         }
     }
 
-   
+    /**
+     * 在持有连接期间逐行映射结果，不再复制到CachedRowSet。
+     */
+    public <T> List<T> query(String sql, String[] params, RowMapper<T> mapper) throws SQLException {
+        List<T> rows = new ArrayList<>();
+        forEach(sql, params, rs -> rows.add(mapper.mapRow(rs)));
+        return rows;
+    }
+
+    /**
+     * 只取第一行，没有结果时返回null。
+     */
+    public <T> T queryOne(String sql, String[] params, RowMapper<T> mapper) throws SQLException {
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            for (int i = 0; i < params.length; i++) {
+                pstmt.setString(i + 1, params[i]);
+            }
+            pstmt.setMaxRows(1);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? mapper.mapRow(rs) : null;
+            }
+        } catch (SQLException e) {
+            System.out.println("Failed to execute SQL query: " + e.getMessage());
+            throw e;
+        }
+    }
+
+    /**
+     * 流式遍历：回调直接读取live ResultSet，回调返回前连接不会归还。
+     * 回调内不要再向连接池申请连接。
+     */
+    public void forEach(String sql, String[] params, RowCallback callback) throws SQLException {
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            for (int i = 0; i < params.length; i++) {
+                pstmt.setString(i + 1, params[i]);
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    callback.processRow(rs);
+                }
+            }
+        } catch (SQLException e) {
+            System.out.println("Failed to execute SQL query: " + e.getMessage());
+            throw e;
+        }
+    }
+
+
+    public void executeUpdate(SqlTemplate template, String[] params) throws SQLException {
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement pstmt = prepare(conn, template)) {
+            template.bind(pstmt, params);
+            pstmt.executeUpdate();
+        } catch (SQLException e) {
+            System.out.println("Failed to execute SQL update: " + e.getMessage());
+            throw e;
+        }
+    }
+
+    public <T> List<T> query(SqlTemplate template, String[] params, RowMapper<T> mapper) throws SQLException {
+        List<T> rows = new ArrayList<>();
+        forEach(template, params, rs -> rows.add(mapper.mapRow(rs)));
+        return rows;
+    }
+
+    public <T> T queryOne(SqlTemplate template, String[] params, RowMapper<T> mapper) throws SQLException {
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement pstmt = prepare(conn, template)) {
+            template.bind(pstmt, params);
+            pstmt.setMaxRows(1);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? mapper.mapRow(rs) : null;
+            }
+        } catch (SQLException e) {
+            System.out.println("Failed to execute SQL query: " + e.getMessage());
+            throw e;
+        }
+    }
+
+    public void forEach(SqlTemplate template, String[] params, RowCallback callback) throws SQLException {
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement pstmt = prepare(conn, template)) {
+            template.bind(pstmt, params);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    callback.processRow(rs);
+                }
+            }
+        } catch (SQLException e) {
+            System.out.println("Failed to execute SQL query: " + e.getMessage());
+            throw e;
+        }
+    }
+
+    /**
+     * 服务端游标逐行推送（MySQL驱动fetchSize=Integer.MIN_VALUE），结果集不在JVM内整体缓冲，
+     * 适合导出等大结果集；回调期间连接一直被占用。
+     */
+    public void stream(SqlTemplate template, String[] params, RowCallback callback) throws SQLException {
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement pstmt = prepare(conn, template)) {
+            template.bind(pstmt, params);
+            pstmt.setFetchSize(Integer.MIN_VALUE);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    callback.processRow(rs);
+                }
+            }
+        } catch (SQLException e) {
+            System.out.println("Failed to execute SQL query: " + e.getMessage());
+            throw e;
+        }
+    }
+
+    /**
+     * 在同一个连接上执行work内的全部语句并一次提交；任何异常都会整体回滚。
+     * 用于明文表 + _encrypted 表的成对写入。
+     */
+    public void inTransaction(TransactionWork work) throws SQLException {
+        try (Connection conn = dataSource.getConnection()) {
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try {
+                work.execute(new Transaction(conn, batchSize));
+                conn.commit();
+            } catch (SQLException | RuntimeException e) {
+                try {
+                    conn.rollback();
+                } catch (SQLException rollbackEx) {
+                    e.addSuppressed(rollbackEx);
+                }
+                throw e;
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+        } catch (SQLException e) {
+            System.out.println("Failed to execute SQL transaction: " + e.getMessage());
+            throw e;
+        }
+    }
+
+    public BatchResult executeBatch(String sql, List<String[]> rows) throws SQLException {
+        return runBatch(null, sql, rows, batchSize);
+    }
+
+    public BatchResult executeBatch(String sql, List<String[]> rows, int batchSize) throws SQLException {
+        return runBatch(null, sql, rows, batchSize);
+    }
+
+    public BatchResult executeBatch(SqlTemplate template, List<String[]> rows) throws SQLException {
+        return runBatch(template, template.getSql(), rows, batchSize);
+    }
+
+    public BatchResult executeBatch(SqlTemplate template, List<String[]> rows, int batchSize) throws SQLException {
+        return runBatch(template, template.getSql(), rows, batchSize);
+    }
+
+    /**
+     * 按batchSize分批addBatch/executeBatch，每批一次提交（驱动开启rewriteBatchedStatements后合并为多值INSERT）。
+     * 某批失败时回滚该批并逐行重放，以得到每一行的准确结果；参数绑定失败的行直接记为失败。
+     * 其他异常（连接断开等）回滚当前批后抛出 BatchFailedException，其中记录了此前已提交的行。
+     */
+    private BatchResult runBatch(SqlTemplate template, String sql, List<String[]> rows, int batchSize) throws SQLException {
+        BatchResult result = new BatchResult(rows.size());
+        if (rows.isEmpty()) {
+            return result;
+        }
+        int chunk = Math.max(1, batchSize);
+        try (Connection conn = dataSource.getConnection()) {
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try (PreparedStatement pstmt = template == null ? conn.prepareStatement(sql) : prepare(conn, template)) {
+                List<Integer> batched = new ArrayList<>(Math.min(chunk, rows.size()));
+                int committed = 0;
+                for (int from = 0; from < rows.size(); from += chunk) {
+                    int to = Math.min(rows.size(), from + chunk);
+                    batched.clear();
+                    try {
+                        for (int i = from; i < to; i++) {
+                            try {
+                                bind(pstmt, template, rows.get(i));
+                                pstmt.addBatch();
+                                batched.add(i);
+                            } catch (SQLException bindEx) {
+                                result.failure(i, bindEx.getMessage());
+                            }
+                        }
+                        if (batched.isEmpty()) {
+                            continue;
+                        }
+                        try {
+                            int[] counts = pstmt.executeBatch();
+                            conn.commit();
+                            for (int k = 0; k < batched.size(); k++) {
+                                result.success(batched.get(k), k < counts.length ? counts[k] : Statement.SUCCESS_NO_INFO);
+                            }
+                            committed += batched.size();
+                        } catch (BatchUpdateException batchEx) {
+                            conn.rollback();
+                            pstmt.clearBatch();
+                            for (int row : batched) {
+                                try {
+                                    bind(pstmt, template, rows.get(row));
+                                    int count = pstmt.executeUpdate();
+                                    conn.commit();
+                                    result.success(row, count);
+                                    committed++;
+                                } catch (SQLException rowEx) {
+                                    conn.rollback();
+                                    result.failure(row, rowEx.getMessage());
+                                }
+                            }
+                        }
+                    } catch (SQLException | RuntimeException e) {
+                        //切换autoCommit会提交未结束的事务，先回滚当前批
+                        try {
+                            conn.rollback();
+                        } catch (SQLException rollbackEx) {
+                            e.addSuppressed(rollbackEx);
+                        }
+                        throw new BatchFailedException(from, to, committed, result, e);
+                    }
+                }
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+        } catch (SQLException e) {
+            System.out.println("Failed to execute SQL batch: " + e.getMessage());
+            throw e;
+        }
+        return result;
+    }
+
+    /**
+     * IN (...) 的参数个数补齐到2的幂（重复最后一个值，不影响结果），
+     * 同一查询不论列表多长只有十来种SQL文本，不会挤掉驱动语句缓存里的热点语句。
+     */
+    public static int inListSize(int count) {
+        return count <= 1 ? count : Integer.highestOneBit(count - 1) << 1;
+    }
+
+    public static String[] padInList(List<String> values) {
+        String[] out = new String[inListSize(values.size())];
+        for (int i = 0; i < out.length; i++) {
+            out[i] = values.get(Math.min(i, values.size() - 1));
+        }
+        return out;
+    }
+
+    //IN (...) 占位符列表
+    public static String placeholders(int count) {
+        StringBuilder sb = new StringBuilder(count * 3);
+        for (int i = 0; i < count; i++) {
+            sb.append(i == 0 ? "?" : ", ?");
+        }
+        return sb.toString();
+    }
+
+    static void bind(PreparedStatement pstmt, SqlTemplate template, String[] params) throws SQLException {
+        if (template != null) {
+            template.bind(pstmt, params);
+            return;
+        }
+        for (int i = 0; i < params.length; i++) {
+            pstmt.setString(i + 1, params[i]);
+        }
+    }
+
+    //同一物理连接上首次使用模板记为一次prepare，之后由驱动的语句缓存命中
+    static PreparedStatement prepare(Connection conn, SqlTemplate template) throws SQLException {
+        Connection physical = conn.isWrapperFor(Connection.class) ? conn.unwrap(Connection.class) : conn;
+        Set<String> prepared = PREPARED_ON.computeIfAbsent(physical, k -> ConcurrentHashMap.newKeySet());
+        template.recordExecution(prepared.add(template.getSql()));
+        return conn.prepareStatement(template.getSql());
+    }
+
+
     public ResultSet executeQuery(String sql, String[] params) throws SQLException {
         try (Connection conn = dataSource.getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             for (int i = 0; i < params.length; i++) {
                 pstmt.setString(i + 1, params[i]);
             }
-            CachedRowSet crs = RowSetProvider.newFactory().createCachedRowSet();
+            CachedRowSet crs = ROW_SET_FACTORY.createCachedRowSet();
             try (ResultSet rs = pstmt.executeQuery()) {
                 crs.populate(rs);
             }
@@ -60,7 +366,7 @@ public class DBConnect {
     public ResultSet executeQuery(String sql) throws SQLException {
         try (Connection conn = dataSource.getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            CachedRowSet crs = RowSetProvider.newFactory().createCachedRowSet();
+            CachedRowSet crs = ROW_SET_FACTORY.createCachedRowSet();
             try (ResultSet rs = pstmt.executeQuery()) {
                 crs.populate(rs);
             }
@@ -0,0 +1,10 @@
+package service;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+//逐行回调，不保留结果集副本
+@FunctionalInterface
+public interface RowCallback {
+    void processRow(ResultSet rs) throws SQLException;
+}
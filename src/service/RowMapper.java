@@ -0,0 +1,10 @@
+package service;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+//把当前行映射为对象，在连接仍被持有时直接读取ResultSet
+@FunctionalInterface
+public interface RowMapper<T> {
+    T mapRow(ResultSet rs) throws SQLException;
+}
@@ -0,0 +1,71 @@
+package service;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 预声明的SQL模板：固定SQL文本 + 每个占位符的类型。
+ * 参数仍以String传入（与executeUpdate保持一致），绑定时按类型调用setInt/setDate/setString，
+ * 避免服务端隐式类型转换。
+ */
+public final class SqlTemplate {
+    public enum Type { STRING, INT, LONG, DATE }
+
+    private final String name;
+    private final String sql;
+    private final Type[] types;
+    private final LongAdder executions = new LongAdder();
+    private final LongAdder prepares = new LongAdder();
+
+    SqlTemplate(String name, String sql, Type... types) {
+        this.name = name;
+        this.sql = sql;
+        this.types = types;
+    }
+
+    public String getName() { return name; }
+    public String getSql() { return sql; }
+
+    void bind(PreparedStatement pstmt, String[] params) throws SQLException {
+        if (params.length != types.length) {
+            throw new SQLException("Template %s expects %d parameters, got %d".formatted(name, types.length, params.length));
+        }
+        for (int i = 0; i < params.length; i++) {
+            String v = params[i];
+            try {
+                switch (types[i]) {
+                    case INT -> {
+                        if (v == null) pstmt.setNull(i + 1, Types.INTEGER);
+                        else pstmt.setInt(i + 1, Integer.parseInt(v.trim()));
+                    }
+                    case LONG -> {
+                        if (v == null) pstmt.setNull(i + 1, Types.BIGINT);
+                        else pstmt.setLong(i + 1, Long.parseLong(v.trim()));
+                    }
+                    case DATE -> {
+                        if (v == null) pstmt.setNull(i + 1, Types.DATE);
+                        else pstmt.setDate(i + 1, Date.valueOf(v.trim()));
+                    }
+                    default -> pstmt.setString(i + 1, v);
+                }
+            } catch (IllegalArgumentException e) {
+                throw new SQLException("Invalid %s parameter %d for template %s".formatted(types[i], i + 1, name), e);
+            }
+        }
+    }
+
+    void recordExecution(boolean prepared) {
+        executions.increment();
+        if (prepared) {
+            prepares.increment();
+        }
+    }
+
+    public long getExecutions() { return executions.sum(); }
+    public long getPrepares() { return prepares.sum(); }
+    //命中服务端语句缓存的次数
+    public long getHits() { return executions.sum() - prepares.sum(); }
+}
@@ -0,0 +1,143 @@
+package service;
+
+import service.SqlTemplate.Type;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+//SQL模板注册表：热点路径(/API/grades, /API/disciplinary-records)的语句在这里统一声明一次
+public final class SqlTemplates {
+    private static final Map<String, SqlTemplate> REGISTRY = new ConcurrentHashMap<>();
+    //dynamic() 登记的变体上限，防止拼接SQL的种类失控时注册表无限增长
+    static final int MAX_DYNAMIC = 1024;
+    private static final AtomicInteger dynamicCount = new AtomicInteger();
+
+    private SqlTemplates() {}
+
+    // students
+    public static final SqlTemplate STUDENT_COUNT = declare("students.count",
+            "SELECT COUNT(*) AS count FROM students WHERE id = ?", Type.STRING);
+    public static final SqlTemplate STUDENT_INSERT = declare("students.insert",
+            "INSERT INTO students (id, last_name, first_name, enrollment_year) VALUES (?, ?, ?, ?)",
+            Type.STRING, Type.STRING, Type.STRING, Type.INT);
+    //登录：三张用户表按邮箱一次查出类型、ID和显示信息；盐和哈希不进缓存，校验时按主键另取
+    public static final SqlTemplate PRINCIPAL_BY_EMAIL = declare("principals.byEmail",
+            "SELECT 0 AS ord, 'students' AS user_type, u.id, e.email, u.first_name, u.last_name, NULL AS role " +
+            "FROM students u JOIN students_encrypted e ON u.id = e.id WHERE e.email = ? " +
+            "UNION ALL SELECT 1, 'guardians', u.id, e.email, u.first_name, u.last_name, NULL " +
+            "FROM guardians u JOIN guardians_encrypted e ON u.id = e.id WHERE e.email = ? " +
+            "UNION ALL SELECT 2, 'staffs', u.id, e.email, u.first_name, u.last_name, u.role " +
+            "FROM staffs u JOIN staffs_encrypted e ON u.id = e.id WHERE e.email = ? " +
+            "ORDER BY ord", Type.STRING, Type.STRING, Type.STRING);
+    public static final SqlTemplate STUDENTS_BY_GUARDIAN = declare("students.byGuardian",
+            "SELECT id FROM students_encrypted WHERE guardian_id = ?", Type.STRING);
+
+    // grades
+    public static final SqlTemplate GRADE_FIND = declare("grades.find",
+            "SELECT id, encrypted_id FROM grades WHERE student_id = ? AND course_id = ? AND term = ?",
+            Type.STRING, Type.STRING, Type.STRING);
+    //报告用成绩查询的SELECT/JOIN部分，单个学生用模板，多个学生拼 IN (...)；课程名取自 CourseCatalog
+    public static final String GRADE_REPORT_SELECT =
+            "SELECT g.id, g.student_id, g.course_id, g.term, ge.grade, ge.comments, " +
+            "COALESCE(CONCAT_WS(' ', s.first_name, s.last_name), '') AS student_name " +
+            "FROM grades g LEFT JOIN grades_encrypted ge ON g.encrypted_id = ge.id " +
+            "LEFT JOIN students s ON g.student_id = s.id";
+    public static final SqlTemplate GRADE_BY_STUDENT = declare("grades.byStudent",
+            GRADE_REPORT_SELECT + " WHERE g.student_id = ?", Type.STRING);
+    public static final SqlTemplate GRADE_ENC_ID = declare("grades.encryptedId",
+            "SELECT encrypted_id, student_id FROM grades WHERE id = ?", Type.STRING);
+    public static final SqlTemplate GRADE_INSERT = declare("grades.insert",
+            "INSERT INTO grades (id, encrypted_id, student_id, course_id, term) VALUES (?, ?, ?, ?, ?)",
+            Type.STRING, Type.STRING, Type.STRING, Type.STRING, Type.STRING);
+    public static final SqlTemplate GRADE_ENC_INSERT = declare("grades_encrypted.insert",
+            "INSERT INTO grades_encrypted (id, grade, comments) VALUES (?, ?, ?)",
+            Type.STRING, Type.STRING, Type.STRING);
+    public static final SqlTemplate GRADE_ENC_UPDATE = declare("grades_encrypted.update",
+            "UPDATE grades_encrypted SET grade = ?, comments = ? WHERE id = ?",
+            Type.STRING, Type.STRING, Type.STRING);
+    public static final SqlTemplate GRADE_DELETE = declare("grades.delete",
+            "DELETE FROM grades WHERE id = ?", Type.STRING);
+    public static final SqlTemplate GRADE_ENC_DELETE = declare("grades_encrypted.delete",
+            "DELETE FROM grades_encrypted WHERE id = ?", Type.STRING);
+
+    // disciplinary records
+    public static final SqlTemplate DISCIPLINARY_COUNT = declare("disciplinary_records.count",
+            "SELECT COUNT(*) AS count FROM disciplinary_records WHERE id = ?", Type.STRING);
+    public static final SqlTemplate DISCIPLINARY_STUDENT = declare("disciplinary_records.studentId",
+            "SELECT student_id FROM disciplinary_records WHERE id = ?", Type.STRING);
+    public static final SqlTemplate DISCIPLINARY_INSERT = declare("disciplinary_records.insert",
+            "INSERT INTO disciplinary_records (id, student_id, date, staff_id) VALUES (?, ?, ?, ?)",
+            Type.STRING, Type.STRING, Type.DATE, Type.STRING);
+    public static final SqlTemplate DISCIPLINARY_ENC_INSERT = declare("disciplinary_records_encrypted.insert",
+            "INSERT INTO disciplinary_records_encrypted (id, descriptions) VALUES (?, ?)",
+            Type.STRING, Type.STRING);
+    public static final SqlTemplate DISCIPLINARY_DELETE = declare("disciplinary_records.delete",
+            "DELETE FROM disciplinary_records WHERE id = ?", Type.STRING);
+    public static final SqlTemplate DISCIPLINARY_ENC_DELETE = declare("disciplinary_records_encrypted.delete",
+            "DELETE FROM disciplinary_records_encrypted WHERE id = ?", Type.STRING);
+
+    // gateway nonces（app.JdbcNonceStore）
+    public static final SqlTemplate NONCE_BY_BATCH = declare("gateway_nonces.byBatch",
+            "SELECT bucket, fp FROM gateway_nonces WHERE batch = ?", Type.LONG);
+
+    // session revocations（app.TokenSessionStore）
+    public static final SqlTemplate REVOCATION_INSERT = declare("session_revocations.insert",
+            "INSERT INTO session_revocations (kind, subject, not_before, expires_at) VALUES (?, ?, ?, ?)",
+            Type.STRING, Type.STRING, Type.LONG, Type.LONG);
+    //自增ID的提交顺序不保证，最近10秒的记录每次都重新读一遍
+    public static final SqlTemplate REVOCATION_SINCE = declare("session_revocations.since",
+            "SELECT id, kind, subject, not_before, expires_at FROM session_revocations " +
+            "WHERE (id > ? OR created_at >= NOW(3) - INTERVAL 10 SECOND) AND expires_at > ? ORDER BY id",
+            Type.LONG, Type.LONG);
+    public static final SqlTemplate REVOCATION_PURGE = declare("session_revocations.purge",
+            "DELETE FROM session_revocations WHERE expires_at <= ?", Type.LONG);
+
+    private static SqlTemplate declare(String name, String sql, Type... types) {
+        SqlTemplate t = new SqlTemplate(name, sql, types);
+        if (REGISTRY.putIfAbsent(sql, t) != null) {
+            throw new IllegalStateException("Duplicate SQL template: " + name);
+        }
+        return t;
+    }
+
+    /**
+     * 按过滤条件拼接出的SQL（组合数有限），按SQL文本注册一次后复用。
+     * IN (...) 列表须先用 DBConnect.padInList 补齐长度，否则每种长度都是一个新变体；
+     * 变体总数超过 MAX_DYNAMIC 后不再登记，照常执行但不计入 stats()。
+     */
+    public static SqlTemplate dynamic(String name, String sql, Type... types) {
+        SqlTemplate t = REGISTRY.get(sql);
+        if (t != null) {
+            return t;
+        }
+        if (dynamicCount.get() >= MAX_DYNAMIC) {
+            return new SqlTemplate(name, sql, types);
+        }
+        return REGISTRY.computeIfAbsent(sql, k -> {
+            dynamicCount.incrementAndGet();
+            return new SqlTemplate(name, sql, types);
+        });
+    }
+
+    public static Collection<SqlTemplate> all() {
+        return Collections.unmodifiableCollection(REGISTRY.values());
+    }
+
+    //按模板名汇总的执行/预编译/缓存命中计数；dynamic() 同名的各个SQL变体累加，variants 为变体数
+    public static Map<String, Map<String, Long>> stats() {
+        Map<String, Map<String, Long>> out = new TreeMap<>();
+        for (SqlTemplate t : REGISTRY.values()) {
+            Map<String, Long> m = out.computeIfAbsent(t.getName(), k -> new LinkedHashMap<>());
+            m.merge("executions", t.getExecutions(), Long::sum);
+            m.merge("prepares", t.getPrepares(), Long::sum);
+            m.merge("hits", t.getHits(), Long::sum);
+            m.merge("variants", 1L, Long::sum);
+        }
+        return out;
+    }
+}
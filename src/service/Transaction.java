@@ -0,0 +1,80 @@
+package service;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * 单连接事务句柄，由DBConnect.inTransaction创建；所有语句共用一个连接，最后一次提交。
+ */
+public class Transaction {
+    private final Connection conn;
+    private final int batchSize;
+
+    Transaction(Connection conn, int batchSize) {
+        this.conn = conn;
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    public int executeUpdate(String sql, String[] params) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            for (int i = 0; i < params.length; i++) {
+                pstmt.setString(i + 1, params[i]);
+            }
+            return pstmt.executeUpdate();
+        }
+    }
+
+    public int executeUpdate(SqlTemplate template, String[] params) throws SQLException {
+        try (PreparedStatement pstmt = DBConnect.prepare(conn, template)) {
+            template.bind(pstmt, params);
+            return pstmt.executeUpdate();
+        }
+    }
+
+    public <T> T queryOne(SqlTemplate template, String[] params, RowMapper<T> mapper) throws SQLException {
+        try (PreparedStatement pstmt = DBConnect.prepare(conn, template)) {
+            template.bind(pstmt, params);
+            pstmt.setMaxRows(1);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? mapper.mapRow(rs) : null;
+            }
+        }
+    }
+
+    /**
+     * 事务内的批量执行：任意一行失败即抛出异常，由inTransaction整体回滚。
+     */
+    public int[] executeBatch(SqlTemplate template, List<String[]> rows) throws SQLException {
+        return executeBatch(template, template.getSql(), rows);
+    }
+
+    public int[] executeBatch(String sql, List<String[]> rows) throws SQLException {
+        return executeBatch(null, sql, rows);
+    }
+
+    private int[] executeBatch(SqlTemplate template, String sql, List<String[]> rows) throws SQLException {
+        int[] counts = new int[rows.size()];
+        if (rows.isEmpty()) {
+            return counts;
+        }
+        try (PreparedStatement pstmt = template == null ? conn.prepareStatement(sql) : DBConnect.prepare(conn, template)) {
+            for (int from = 0; from < rows.size(); from += batchSize) {
+                int to = Math.min(rows.size(), from + batchSize);
+                for (int i = from; i < to; i++) {
+                    DBConnect.bind(pstmt, template, rows.get(i));
+                    pstmt.addBatch();
+                }
+                int[] chunk = pstmt.executeBatch();
+                System.arraycopy(chunk, 0, counts, from, Math.min(chunk.length, to - from));
+            }
+        }
+        return counts;
+    }
+
+    public Connection getConnection() {
+        return conn;
+    }
+}
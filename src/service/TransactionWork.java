@@ -0,0 +1,8 @@
+package service;
+
+import java.sql.SQLException;
+
+@FunctionalInterface
+public interface TransactionWork {
+    void execute(Transaction tx) throws SQLException;
+}
@@ -1,38 +1,39 @@
 package tables;
 
-import java.sql.ResultSet;
+import service.CourseCatalog;
+
 import java.sql.SQLException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
+//课程元数据全部走内存目录 service.CourseCatalog，不再查库
 public class Courses {
     public static String getName(String courseID) throws SQLException{
-        try{
-            String sql = "SELECT name FROM Courses WHERE id = ?";
-            String[] params = {courseID};
-            ResultSet rs = service.DBConnect.dbConnector.executeQuery(sql, params);
-            if(rs.next()){
-                return rs.getString("name");
-            } else {
-                return null;
-            }
-        } catch (Exception e){
-            System.out.println("Error: " + e.getMessage());
-            throw e;
-        }
+        return CourseCatalog.catalog.getName(courseID);
     }
 
     public static String getIdByName(String courseName) throws SQLException {
-        try{
-            String sql = "SELECT id FROM Courses WHERE name = ? LIMIT 1";
-            String[] params = {courseName};
-            ResultSet rs = service.DBConnect.dbConnector.executeQuery(sql, params);
-            if(rs.next()){
-                return rs.getString("id");
-            } else {
-                return null;
-            }
-        } catch (Exception e){
-            System.out.println("Error: " + e.getMessage());
-            throw e;
-        }
+        return CourseCatalog.catalog.getIdByName(courseName);
+    }
+
+    //批量按名称解析课程ID
+    public static Map<String, String> getIdsByName(Collection<String> courseNames) throws SQLException {
+        return CourseCatalog.catalog.getIdsByName(courseNames);
+    }
+
+    //批量校验课程ID，返回其中存在的ID
+    public static Set<String> existingIds(Collection<String> courseIDs) throws SQLException {
+        return CourseCatalog.catalog.existingIds(courseIDs);
+    }
+
+    //课程名包含关键字的课程ID（忽略大小写）
+    public static List<String> idsByNameContaining(String part) throws SQLException {
+        return CourseCatalog.catalog.idsByNameContaining(part);
+    }
+
+    public static List<String> idsByNamePrefix(String prefix) throws SQLException {
+        return CourseCatalog.catalog.idsByNamePrefix(prefix);
     }
 }
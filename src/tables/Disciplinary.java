@@ -1,54 +1,73 @@
 package tables;
 
 import service.DBConnect;
+import service.RowMapper;
+import service.SqlTemplate;
+import service.SqlTemplates;
 
-import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
 public class Disciplinary {
+    private static final String REPORT_SELECT = "SELECT dr.id, dr.student_id, dr.date, dr.staff_id, dre.descriptions, " +
+            "COALESCE(CONCAT_WS(' ', s.first_name, s.last_name), '') AS student_name, " +
+            "COALESCE(CONCAT_WS(' ', st.first_name, st.last_name), '') AS staff_name " +
+            "FROM disciplinary_records dr JOIN disciplinary_records_encrypted dre ON dr.id = dre.id " +
+            "LEFT JOIN students s ON dr.student_id = s.id " +
+            "LEFT JOIN staffs st ON dr.staff_id = st.id";
+
+    private static final RowMapper<HashMap<String, String>> RECORD_ROW = rs -> {
+        HashMap<String, String> map = new HashMap<>();
+        map.put("id", rs.getString("id"));
+        map.put("student_id", rs.getString("student_id"));
+        map.put("date", rs.getString("date"));
+        map.put("staff_id", rs.getString("staff_id"));
+        map.put("descriptions", rs.getString("descriptions"));
+        String studentName = rs.getString("student_name");
+        if (studentName != null && !studentName.isBlank()) {
+            map.put("student_name", studentName);
+        }
+        String staffName = rs.getString("staff_name");
+        if (staffName != null && !staffName.isBlank()) {
+            map.put("staff_name", staffName);
+        }
+        return map;
+    };
+
     public static ArrayList<HashMap<String, String>> getStudentDisciplinary(String studentID, String date, String staff_id) throws SQLException {
         ArrayList<HashMap<String, String>> disciplinaryMap = new ArrayList<>();
         try {
-                StringBuilder sql = new StringBuilder("SELECT dr.id, dr.student_id, dr.date, dr.staff_id, dre.descriptions, " +
-                    "COALESCE(CONCAT_WS(' ', s.first_name, s.last_name), '') AS student_name, " +
-                    "COALESCE(CONCAT_WS(' ', st.first_name, st.last_name), '') AS staff_name " +
-                    "FROM disciplinary_records dr JOIN disciplinary_records_encrypted dre ON dr.id = dre.id " +
-                    "LEFT JOIN students s ON dr.student_id = s.id " +
-                    "LEFT JOIN staffs st ON dr.staff_id = st.id WHERE 1=1");
+            StringBuilder sql = new StringBuilder(REPORT_SELECT + " WHERE 1=1");
             ArrayList<String> params = new ArrayList<>();
+            ArrayList<SqlTemplate.Type> types = new ArrayList<>();
+            StringBuilder templateName = new StringBuilder("disciplinary_records.list");
             if (studentID != null && !studentID.isBlank()) {
                 sql.append(" AND dr.student_id = ?");
                 params.add(studentID);
+                types.add(SqlTemplate.Type.STRING);
+                templateName.append(".student");
             }
             if (date != null && !date.isBlank()) {
                 sql.append(" AND dr.date = ?");
                 params.add(date);
+                types.add(SqlTemplate.Type.DATE);
+                templateName.append(".date");
             }
             if (staff_id != null && !staff_id.isBlank()) {
                 sql.append(" AND dr.staff_id = ?");
                 params.add(staff_id);
+                types.add(SqlTemplate.Type.STRING);
+                templateName.append(".staff");
             }
             sql.append(" ORDER BY dr.date DESC");
-            ResultSet rs = DBConnect.dbConnector.executeQuery(sql.toString(), params.toArray(new String[0]));
-            while (rs.next()) {
-                HashMap<String, String> map = new HashMap<>();
-                map.put("id", rs.getString("id"));
-                map.put("student_id", rs.getString("student_id"));
-                map.put("date", rs.getString("date"));
-                map.put("staff_id", rs.getString("staff_id"));
-                map.put("descriptions", rs.getString("descriptions"));
-                String studentName = rs.getString("student_name");
-                if (studentName != null && !studentName.isBlank()) {
-                    map.put("student_name", studentName);
-                }
-                String staffName = rs.getString("staff_name");
-                if (staffName != null && !staffName.isBlank()) {
-                    map.put("staff_name", staffName);
-                }
-                disciplinaryMap.add(map);
-            }
+            SqlTemplate template = SqlTemplates.dynamic(templateName.toString(), sql.toString(), types.toArray(new SqlTemplate.Type[0]));
+            DBConnect.dbConnector.forEach(template, params.toArray(new String[0]), rs -> disciplinaryMap.add(RECORD_ROW.mapRow(rs)));
         } catch (Exception e) {
             System.out.println("Error: " + e.getMessage());
             throw e;
@@ -58,4 +77,39 @@ public class Disciplinary {
     public static ArrayList<HashMap<String, String>> getStudentDisciplinary(String studentID) throws SQLException {
         return getStudentDisciplinary(studentID, null, null);
     }
+    /**
+     * 多个学生的纪律记录用 student_id IN (...) 分块取回，按学生分组（组内仍按日期倒序）。
+     */
+    public static Map<String, ArrayList<HashMap<String, String>>> getDisciplinaryByStudents(Collection<String> studentIDs) throws SQLException {
+        Map<String, ArrayList<HashMap<String, String>>> byStudent = new LinkedHashMap<>();
+        //IN (...) 按MySQL排序规则忽略大小写匹配，返回的 student_id 大小写可能与传入的不同
+        Map<String, ArrayList<HashMap<String, String>>> lookup = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        for (String id : studentIDs) {
+            if (id != null && !lookup.containsKey(id)) {
+                ArrayList<HashMap<String, String>> rows = new ArrayList<>();
+                byStudent.put(id, rows);
+                lookup.put(id, rows);
+            }
+        }
+        List<String> ids = new ArrayList<>(byStudent.keySet());
+        try {
+            for (int from = 0; from < ids.size(); from += 500) {
+                List<String> part = ids.subList(from, Math.min(ids.size(), from + 500));
+                String[] params = DBConnect.padInList(part);
+                String sql = REPORT_SELECT + " WHERE dr.student_id IN (" + DBConnect.placeholders(params.length) + ") ORDER BY dr.date DESC";
+                DBConnect.dbConnector.forEach(sql, params, rs -> {
+                    HashMap<String, String> map = RECORD_ROW.mapRow(rs);
+                    String studentId = map.get("student_id");
+                    ArrayList<HashMap<String, String>> rows = studentId == null ? null : lookup.get(studentId);
+                    if (rows != null) {
+                        rows.add(map);
+                    }
+                });
+            }
+        } catch (Exception e) {
+            System.out.println("Error: " + e.getMessage());
+            throw e;
+        }
+        return byStudent;
+    }
 }
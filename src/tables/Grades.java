@@ -1,46 +1,76 @@
 package tables;
-import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 import service.DBConnect;
+import service.RowMapper;
+import service.SqlTemplates;
 public class Grades {
+    //成绩行 + 课程名 + 明文成绩 + 学生姓名一次JOIN取回，不再逐行补查
+    static final RowMapper<HashMap<String, String>> GRADE_ROW = rs -> {
+        HashMap<String, String> map = new HashMap<>();
+        String studentName = rs.getString("student_name");
+        if(studentName != null && !studentName.isBlank()){
+            map.put("student_name", studentName);
+        }
+        map.put("id", rs.getString("id"));
+        map.put("student_id", rs.getString("student_id"));
+        map.put("course_id", rs.getString("course_id"));
+        map.put("course_name", Courses.getName(rs.getString("course_id")));
+        map.put("term", rs.getString("term"));
+        map.put("grade", rs.getString("grade"));
+        map.put("comments", rs.getString("comments"));
+        return map;
+    };
     public static ArrayList<HashMap<String, String>> getStudentGrades(String studentID) throws SQLException {
-        ArrayList<HashMap<String, String>> gradesMap = new ArrayList<>();
         try {
-            String sql = "SELECT * FROM Grades WHERE student_id = ?";
-            String[] params = {studentID};
-            ResultSet rs = DBConnect.dbConnector.executeQuery(sql, params);
-            while (rs.next()) {
-                HashMap<String, String> map = new HashMap<>();
-                String ID = rs.getString("id");
-                String encrypted_id = rs.getString("encrypted_id");
-                String courseID = rs.getString("course_id");
-                String courseName = Courses.getName(courseID);
-                String term = rs.getString("term");
-                ResultSet trs = DBConnect.dbConnector.executeQuery("SELECT grade,comments FROM grades_encrypted WHERE id = ?", new String[]{encrypted_id});
-                trs.next();
-                String grade = trs.getString("grade");
-                String comments = trs.getString("comments");
-                String studentName = getStudentNameById(studentID);
-                if(studentName != null && !studentName.isBlank()){
-                    map.put("student_name", studentName);
-                }
-                map.put("id", ID);
-                map.put("student_id", studentID);
-                map.put("course_id", courseID);
-                map.put("course_name", courseName);
-                map.put("term", term);
-                map.put("grade", grade);
-                map.put("comments", comments);
-                gradesMap.add(map);
-            }
+            return new ArrayList<>(DBConnect.dbConnector.query(SqlTemplates.GRADE_BY_STUDENT, new String[]{studentID}, GRADE_ROW));
         } catch (Exception e) {
             e.printStackTrace();
             System.out.println("Error: " + e.getMessage());
             throw e;
         }
-        return gradesMap;
+    }
+    /**
+     * 多个学生的成绩用 student_id IN (...) 分块取回，按学生分组；每个学生都有条目（可能为空列表）。
+     */
+    public static Map<String, ArrayList<HashMap<String, String>>> getGradesByStudents(Collection<String> studentIDs) throws SQLException {
+        Map<String, ArrayList<HashMap<String, String>>> byStudent = new LinkedHashMap<>();
+        //IN (...) 按MySQL排序规则忽略大小写匹配，返回的 student_id 大小写可能与传入的不同
+        Map<String, ArrayList<HashMap<String, String>>> lookup = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        for (String id : studentIDs) {
+            if (id != null && !lookup.containsKey(id)) {
+                ArrayList<HashMap<String, String>> rows = new ArrayList<>();
+                byStudent.put(id, rows);
+                lookup.put(id, rows);
+            }
+        }
+        List<String> ids = new ArrayList<>(byStudent.keySet());
+        try {
+            for (int from = 0; from < ids.size(); from += 500) {
+                List<String> part = ids.subList(from, Math.min(ids.size(), from + 500));
+                String[] params = DBConnect.padInList(part);
+                String sql = SqlTemplates.GRADE_REPORT_SELECT + " WHERE g.student_id IN (" + DBConnect.placeholders(params.length) + ")";
+                DBConnect.dbConnector.forEach(sql, params, rs -> {
+                    HashMap<String, String> map = GRADE_ROW.mapRow(rs);
+                    String studentId = map.get("student_id");
+                    ArrayList<HashMap<String, String>> rows = studentId == null ? null : lookup.get(studentId);
+                    if (rows != null) {
+                        rows.add(map);
+                    }
+                });
+            }
+        } catch (Exception e) {
+            System.out.println("Error: " + e.getMessage());
+            throw e;
+        }
+        return byStudent;
     }
     public static String getStudentNameById(String studentID) throws SQLException {
         if (studentID == null || studentID.isBlank()) {
@@ -48,16 +78,36 @@ public class Grades {
         }
         try {
             String sql = "SELECT COALESCE(CONCAT_WS(' ', first_name, last_name), '') AS student_name FROM students WHERE id = ?";
-            ResultSet rs = DBConnect.dbConnector.executeQuery(sql, new String[]{studentID});
-            if (rs.next()) {
-                String name = rs.getString("student_name");
-                return name == null || name.isBlank() ? null : name;
-            }
+            String name = DBConnect.dbConnector.queryOne(sql, new String[]{studentID}, rs -> rs.getString("student_name"));
+            return name == null || name.isBlank() ? null : name;
         } catch (Exception e) {
             e.printStackTrace();
             System.out.println("Error: " + e.getMessage());
             throw e;
         }
-        return null;
+    }
+    /**
+     * 批量取出这些学生已有成绩的 encrypted_id，key为 gradeKey(student, course, term)。
+     */
+    public static Map<String, String> getEncryptedIdsByKey(Collection<String> studentIDs) throws SQLException {
+        Map<String, String> byKey = new HashMap<>();
+        List<String> ids = new ArrayList<>(new HashSet<>(studentIDs));
+        try {
+            for (int from = 0; from < ids.size(); from += 500) {
+                List<String> part = ids.subList(from, Math.min(ids.size(), from + 500));
+                String[] params = DBConnect.padInList(part);
+                String sql = "SELECT encrypted_id, student_id, course_id, term FROM grades WHERE student_id IN (" + DBConnect.placeholders(params.length) + ")";
+                DBConnect.dbConnector.forEach(sql, params, rs -> byKey.put(
+                        gradeKey(rs.getString("student_id"), rs.getString("course_id"), rs.getString("term")),
+                        rs.getString("encrypted_id")));
+            }
+        } catch (Exception e) {
+            System.out.println("Error: " + e.getMessage());
+            throw e;
+        }
+        return byKey;
+    }
+    public static String gradeKey(String studentID, String courseID, String term) {
+        return studentID + "|" + courseID + "|" + term;
     }
 }
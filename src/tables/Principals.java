@@ -0,0 +1,71 @@
+package tables;
+
+import service.DBConnect;
+import service.RowMapper;
+import service.SqlTemplate;
+import service.SqlTemplates;
+
+import java.sql.SQLException;
+import java.util.List;
+
+//登录主体：students / guardians / staffs 三张表按邮箱一次 UNION 查询
+public class Principals {
+    /**
+     * userType 为表名（students/guardians/staffs），role 仅 staffs 有值。
+     * 不含盐和哈希：该记录会被 PrincipalDirectory 缓存，凭据须在校验时用 findCredentials 现取。
+     */
+    public record Principal(String userType, String id, String email,
+                            String firstName, String lastName, String role) {}
+
+    public record Credentials(String salt, String passwordHash) {}
+
+    private static final RowMapper<Principal> PRINCIPAL_ROW = rs -> new Principal(
+            rs.getString("user_type"), rs.getString("id"), rs.getString("email"),
+            rs.getString("first_name"), rs.getString("last_name"), rs.getString("role"));
+    private static final RowMapper<Credentials> CREDENTIALS_ROW = rs -> new Credentials(
+            rs.getString("salt"), rs.getString("password_hash"));
+
+    //按 students、guardians、staffs 顺序返回该邮箱的所有账户
+    public static List<Principal> findByEmail(String email) throws SQLException {
+        try {
+            return DBConnect.dbConnector.query(SqlTemplates.PRINCIPAL_BY_EMAIL, new String[]{email, email, email}, PRINCIPAL_ROW);
+        } catch (Exception e) {
+            System.out.println("Error: " + e.getMessage());
+            throw e;
+        }
+    }
+
+    //table 只能是 students / guardians / staffs，不存在时返回null
+    public static Principal findById(String table, String id) throws SQLException {
+        String t = userTable(table);
+        SqlTemplate template = SqlTemplates.dynamic("principals.byId." + t,
+                "SELECT '%s' AS user_type, u.id, e.email, u.first_name, u.last_name, %s AS role FROM %s u JOIN %s_encrypted e ON u.id = e.id WHERE u.id = ?"
+                        .formatted(t, "staffs".equals(t) ? "u.role" : "NULL", t, t), SqlTemplate.Type.STRING);
+        try {
+            return DBConnect.dbConnector.queryOne(template, new String[]{id}, PRINCIPAL_ROW);
+        } catch (Exception e) {
+            System.out.println("Error: " + e.getMessage());
+            throw e;
+        }
+    }
+
+    //按主键读取当前的盐和哈希，不经过缓存，应用外修改的密码立即生效
+    public static Credentials findCredentials(String table, String id) throws SQLException {
+        String t = userTable(table);
+        SqlTemplate template = SqlTemplates.dynamic("principals.credentials." + t,
+                "SELECT salt, password_hash FROM %s_encrypted WHERE id = ?".formatted(t), SqlTemplate.Type.STRING);
+        try {
+            return DBConnect.dbConnector.queryOne(template, new String[]{id}, CREDENTIALS_ROW);
+        } catch (Exception e) {
+            System.out.println("Error: " + e.getMessage());
+            throw e;
+        }
+    }
+
+    private static String userTable(String table) throws SQLException {
+        return switch (table.toLowerCase()) {
+            case "students", "guardians", "staffs" -> table.toLowerCase();
+            default -> throw new SQLException("invalid user table: " + table);
+        };
+    }
+}
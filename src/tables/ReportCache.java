@@ -0,0 +1,97 @@
+package tables;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 每个学生一份的报告缓存（/API/reports）。
+ * 成绩/纪律的写路径在返回前调用 invalidate；每个学生维护一个写代数，
+ * 加载期间发生写入时加载结果会被丢弃，因此写返回后不会再读到旧报告。
+ * 只缓存完整（无errors）的报告；缓存中的报告为共享对象，调用方不得修改。
+ * 学生ID按MySQL排序规则归一（忽略大小写和末尾空格）后作为键，写路径传入的ID大小写不同也能失效同一份报告。
+ */
+public final class ReportCache {
+    private static final Cache<String, Reports.StudentReport> CACHE = Caffeine.newBuilder()
+            .maximumSize(10_000)
+            //课程名、学生姓名变更不走失效路径，靠过期兜底
+            .expireAfterWrite(Duration.ofMinutes(10))
+            .recordStats()
+            .build();
+    private static final Map<String, Long> GENERATIONS = new ConcurrentHashMap<>();
+
+    private ReportCache() {}
+
+    //按传入顺序返回报告，未命中的学生一起走 Reports.forStudents
+    public static List<Reports.StudentReport> get(List<String> studentIDs, long deadlineMillis) {
+        Map<String, Reports.StudentReport> out = new LinkedHashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (String id : new LinkedHashSet<>(studentIDs)) {
+            Reports.StudentReport cached = CACHE.getIfPresent(key(id));
+            out.put(id, cached);
+            if (cached == null) {
+                missing.add(id);
+            }
+        }
+        if (!missing.isEmpty()) {
+            Map<String, Long> seen = new LinkedHashMap<>();
+            for (String id : missing) {
+                seen.put(id, GENERATIONS.get(key(id)));
+            }
+            for (Reports.StudentReport report : Reports.forStudents(missing, deadlineMillis)) {
+                out.put(report.studentId, report);
+                if (report.isComplete()) {
+                    String key = key(report.studentId);
+                    CACHE.put(key, report);
+                    //加载期间有写入：撤回刚放入的结果
+                    if (!Objects.equals(GENERATIONS.get(key), seen.get(report.studentId))) {
+                        CACHE.asMap().remove(key, report);
+                    }
+                }
+            }
+        }
+        return new ArrayList<>(out.values());
+    }
+
+    public static void invalidate(String studentID) {
+        if (studentID == null) {
+            return;
+        }
+        String key = key(studentID);
+        GENERATIONS.merge(key, 1L, Long::sum);
+        CACHE.invalidate(key);
+    }
+
+    private static String key(String studentID) {
+        return studentID.stripTrailing().toLowerCase(Locale.ROOT);
+    }
+
+    public static void invalidateAll(Collection<String> studentIDs) {
+        for (String id : studentIDs) {
+            invalidate(id);
+        }
+    }
+
+    //命中率等统计
+    public static Map<String, Object> stats() {
+        CacheStats s = CACHE.stats();
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("size", CACHE.estimatedSize());
+        m.put("hits", s.hitCount());
+        m.put("misses", s.missCount());
+        m.put("hitRate", s.hitRate());
+        m.put("evictions", s.evictionCount());
+        return m;
+    }
+}
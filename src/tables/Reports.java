@@ -0,0 +1,92 @@
+package tables;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 多学生报告批量组装：成绩、纪律记录各按 student_id IN (...) 取回后在内存中按学生分组，
+ * 查询次数与学生人数无关（每500个学生一块）。
+ * 各块查询在虚拟线程上并发执行，整体受截止时间约束；某块失败/超时只记到对应学生的errors，不影响其他学生。
+ */
+public class Reports {
+    private static final int IN_CHUNK = 500;
+    private static final ExecutorService EXECUTOR = Executors.newVirtualThreadPerTaskExecutor();
+
+    public static final class StudentReport {
+        public final String studentId;
+        public final ArrayList<HashMap<String, String>> grades = new ArrayList<>();
+        public final ArrayList<HashMap<String, String>> disciplinary = new ArrayList<>();
+        public final List<String> errors = new ArrayList<>();
+
+        StudentReport(String studentId) {
+            this.studentId = studentId;
+        }
+
+        public boolean isComplete() {
+            return errors.isEmpty();
+        }
+    }
+
+    private record Part(String kind, List<String> studentIDs, Future<Map<String, ArrayList<HashMap<String, String>>>> future) {}
+
+    //按传入顺序返回每个学生的报告，deadlineMillis 内未完成的查询会被取消并记为 timeout
+    public static List<StudentReport> forStudents(List<String> studentIDs, long deadlineMillis) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(deadlineMillis);
+        Map<String, StudentReport> reports = new LinkedHashMap<>();
+        for (String id : studentIDs) {
+            reports.computeIfAbsent(id, StudentReport::new);
+        }
+        List<String> ids = new ArrayList<>(reports.keySet());
+        List<Part> parts = new ArrayList<>();
+        for (int from = 0; from < ids.size(); from += IN_CHUNK) {
+            List<String> chunk = ids.subList(from, Math.min(ids.size(), from + IN_CHUNK));
+            parts.add(new Part("grades", chunk, submit(() -> Grades.getGradesByStudents(chunk))));
+            parts.add(new Part("disciplinary", chunk, submit(() -> Disciplinary.getDisciplinaryByStudents(chunk))));
+        }
+        for (Part part : parts) {
+            String error;
+            try {
+                Map<String, ArrayList<HashMap<String, String>>> rows =
+                        part.future().get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                for (Map.Entry<String, ArrayList<HashMap<String, String>>> e : rows.entrySet()) {
+                    StudentReport report = reports.get(e.getKey());
+                    ("grades".equals(part.kind()) ? report.grades : report.disciplinary).addAll(e.getValue());
+                }
+                continue;
+            } catch (TimeoutException e) {
+                part.future().cancel(true);
+                error = part.kind() + ": timeout";
+            } catch (ExecutionException e) {
+                System.out.println("Error: " + e.getCause().getMessage());
+                error = part.kind() + ": query failed";
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                part.future().cancel(true);
+                error = part.kind() + ": interrupted";
+            }
+            for (String id : part.studentIDs()) {
+                reports.get(id).errors.add(error);
+            }
+        }
+        return new ArrayList<>(reports.values());
+    }
+
+    private static Future<Map<String, ArrayList<HashMap<String, String>>>> submit(Callable<Map<String, ArrayList<HashMap<String, String>>>> query) {
+        return EXECUTOR.submit(query);
+    }
+
+    public static List<StudentReport> forGuardian(String guardianID, long deadlineMillis) throws SQLException {
+        return forStudents(Students.getIdsByGuardian(guardianID), deadlineMillis);
+    }
+}
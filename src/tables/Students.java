@@ -0,0 +1,43 @@
+package tables;
+
+import service.DBConnect;
+import service.SqlTemplates;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+public class Students {
+    private static final int IN_CHUNK = 500;
+
+    //监护人名下所有学生ID
+    public static List<String> getIdsByGuardian(String guardianID) throws SQLException {
+        try {
+            return DBConnect.dbConnector.query(SqlTemplates.STUDENTS_BY_GUARDIAN, new String[]{guardianID}, rs -> rs.getString("id"));
+        } catch (Exception e) {
+            System.out.println("Error: " + e.getMessage());
+            throw e;
+        }
+    }
+
+    //批量校验学生是否存在，返回其中存在的ID
+    public static Set<String> existingIds(Collection<String> studentIDs) throws SQLException {
+        Set<String> found = new HashSet<>();
+        List<String> ids = new ArrayList<>(new HashSet<>(studentIDs));
+        try {
+            for (int from = 0; from < ids.size(); from += IN_CHUNK) {
+                List<String> part = ids.subList(from, Math.min(ids.size(), from + IN_CHUNK));
+                String[] params = DBConnect.padInList(part);
+                String sql = "SELECT id FROM students WHERE id IN (" + DBConnect.placeholders(params.length) + ")";
+                DBConnect.dbConnector.forEach(sql, params, rs -> found.add(rs.getString("id")));
+            }
+        } catch (Exception e) {
+            System.out.println("Error: " + e.getMessage());
+            throw e;
+        }
+        return found;
+    }
+}
@@ -1,6 +1,8 @@
 package users;
 
 import service.DBConnect;
+import service.SqlTemplates;
+import tables.ReportCache;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -24,15 +26,18 @@ public class ARO extends User{
     }
     public void addGrade(String ID, String studentID, String courseID, String term, String grade, String comments) throws SQLException {
         try {
-            String sql = "INSERT INTO grades (id, student_id, course_id, term) VALUES (?, ?, ?, ?)";
-            String[] params = {ID, studentID, courseID, term};
-            DBConnect.dbConnector.executeUpdate(sql, params);
-            String sqlEnc = "INSERT INTO grades_encrypted (id, grade, comments) VALUES (?, ?, ?)";
+            //grades.encrypted_id 外键指向 grades_encrypted，先写加密表；两条语句同一事务提交
             String[] paramsEnc = {ID, grade, comments};
-            DBConnect.dbConnector.executeUpdate(sqlEnc, paramsEnc);
+            String[] params = {ID, ID, studentID, courseID, term};
+            DBConnect.dbConnector.inTransaction(tx -> {
+                tx.executeUpdate(SqlTemplates.GRADE_ENC_INSERT, paramsEnc);
+                tx.executeUpdate(SqlTemplates.GRADE_INSERT, params);
+            });
         } catch (Exception e) {
             System.out.println("Error: " + e.getMessage());
             throw e;
+        } finally {
+            ReportCache.invalidate(studentID);
         }
     }
     public void updateGrade(String ID, HashMap<String, String> map) throws SQLException {
@@ -59,21 +64,35 @@ public class ARO extends User{
         }
         valNormal.add(ID);
         valEnc.add(ID);
-        if(valNormal.size() > 1)
-            DBConnect.dbConnector.executeUpdate(sql.toString(), valNormal.toArray(new String[0]));
-        if(valEnc.size() > 1)
-            DBConnect.dbConnector.executeUpdate(sqlEnc.toString(), valEnc.toArray(new String[0]));
+        //报告缓存按学生失效：更新前后的student_id都要失效
+        String[] studentID = new String[1];
+        try {
+            DBConnect.dbConnector.inTransaction(tx -> {
+                studentID[0] = tx.queryOne(SqlTemplates.GRADE_ENC_ID, new String[]{ID}, rs -> rs.getString("student_id"));
+                if(valNormal.size() > 1)
+                    tx.executeUpdate(sql.toString(), valNormal.toArray(new String[0]));
+                if(valEnc.size() > 1)
+                    tx.executeUpdate(sqlEnc.toString(), valEnc.toArray(new String[0]));
+            });
+        } finally {
+            ReportCache.invalidate(studentID[0]);
+            ReportCache.invalidate(map.get("student_id"));
+        }
     }
     public void deleteGrade(String ID) throws SQLException {
+        String[] studentID = new String[1];
         try {
-            String sql = "DELETE FROM grades WHERE id = ?";
             String[] params = {ID};
-            DBConnect.dbConnector.executeUpdate(sql, params);
-            String sqlEnc = "DELETE FROM grades_encrypted WHERE id = ?";
-            DBConnect.dbConnector.executeUpdate(sqlEnc, params);
+            DBConnect.dbConnector.inTransaction(tx -> {
+                studentID[0] = tx.queryOne(SqlTemplates.GRADE_ENC_ID, params, rs -> rs.getString("student_id"));
+                tx.executeUpdate(SqlTemplates.GRADE_DELETE, params);
+                tx.executeUpdate(SqlTemplates.GRADE_ENC_DELETE, params);
+            });
         } catch (Exception e) {
             System.out.println("Error: " + e.getMessage());
             throw e;
+        } finally {
+            ReportCache.invalidate(studentID[0]);
         }
     }
 
@@ -1,6 +1,8 @@
 package users;
 
 import service.DBConnect;
+import service.SqlTemplates;
+import tables.ReportCache;
 
 import java.sql.SQLException;
 import java.util.ArrayList;
@@ -45,40 +47,50 @@ public class DRO extends User{
         }
         valNormal.add(ID);
         valEnc.add(ID);
-        if(valNormal.size() > 1)
-            DBConnect.dbConnector.executeUpdate(sql.toString(), valNormal.toArray(new String[0]));
-        if(valEnc.size() > 1)
-            DBConnect.dbConnector.executeUpdate(sqlEnc.toString(), valEnc.toArray(new String[0]));
+        //报告缓存按学生失效：更新前后的student_id都要失效
+        String[] studentID = new String[1];
+        try {
+            DBConnect.dbConnector.inTransaction(tx -> {
+                studentID[0] = tx.queryOne(SqlTemplates.DISCIPLINARY_STUDENT, new String[]{ID}, rs -> rs.getString("student_id"));
+                if(valNormal.size() > 1)
+                    tx.executeUpdate(sql.toString(), valNormal.toArray(new String[0]));
+                if(valEnc.size() > 1)
+                    tx.executeUpdate(sqlEnc.toString(), valEnc.toArray(new String[0]));
+            });
+        } finally {
+            ReportCache.invalidate(studentID[0]);
+            ReportCache.invalidate(map.get("student_id"));
+        }
     }
     public void addDisciplinary(String ID, String studentID, String date, String staffID, String descriptions) throws SQLException {
-        String sql = "INSERT INTO disciplinary_records (id, student_id, date, staff_id) VALUES (?, ?, ?, ?)";
-        String sqlEnc = "INSERT INTO disciplinary_records_encrypted (id, descriptions) VALUES (?, ?)";
         String[] params = {ID, studentID, date, staffID};
         String[] paramsEnc = {ID, descriptions};
         try {
-            DBConnect.dbConnector.executeUpdate(sql, params);
-            try {
-                DBConnect.dbConnector.executeUpdate(sqlEnc, paramsEnc);
-            } catch (SQLException encEx) {
-                
-                DBConnect.dbConnector.executeUpdate("DELETE FROM disciplinary_records WHERE id = ?", new String[]{ID});
-                throw encEx;
-            }
+            DBConnect.dbConnector.inTransaction(tx -> {
+                tx.executeUpdate(SqlTemplates.DISCIPLINARY_INSERT, params);
+                tx.executeUpdate(SqlTemplates.DISCIPLINARY_ENC_INSERT, paramsEnc);
+            });
         } catch (SQLException e) {
             System.out.println("Error: " + e.getMessage());
             throw e;
+        } finally {
+            ReportCache.invalidate(studentID);
         }
     }
     public void deleteDisciplinary(String ID) throws SQLException {
+        String[] studentID = new String[1];
         try {
-            String sqlEnc = "DELETE FROM disciplinary_records_encrypted WHERE id = ?";
             String[] params = {ID};
-            DBConnect.dbConnector.executeUpdate(sqlEnc, params);
-            String sql = "DELETE FROM disciplinary_records WHERE id = ?";
-            DBConnect.dbConnector.executeUpdate(sql, params);
+            DBConnect.dbConnector.inTransaction(tx -> {
+                studentID[0] = tx.queryOne(SqlTemplates.DISCIPLINARY_STUDENT, params, rs -> rs.getString("student_id"));
+                tx.executeUpdate(SqlTemplates.DISCIPLINARY_ENC_DELETE, params);
+                tx.executeUpdate(SqlTemplates.DISCIPLINARY_DELETE, params);
+            });
         } catch (Exception e) {
             System.out.println("Error: " + e.getMessage());
             throw e;
+        } finally {
+            ReportCache.invalidate(studentID[0]);
         }
     }
 }
@@ -1,11 +1,9 @@
 package users;
 
-import service.DBConnect;
-
-import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 
 public class Guardian extends User {
     private static final String[] NORMAL_ATTRIBUTES = new String[]{"id","last_name","first_name"};
@@ -22,26 +20,19 @@ public class Guardian extends User {
     protected String[] getEncryptedAttributes() {
         return ENCRYPTED_ATTRIBUTES;
     }
+    //所有子女的成绩一次 IN 查询取回
     public HashMap[] getChildGrades() throws SQLException{
         ArrayList<HashMap<String,String>> childGrades = new ArrayList<>();
-        String sql = "SELECT id FROM students_encrypted WHERE guardian_id = ?";
-        String[] params = {this.ID};
-        ResultSet rs = DBConnect.dbConnector.executeQuery(sql,params);
-        while(rs.next()){
-            String studentID = rs.getString("id");
-            ArrayList<HashMap<String,String>> grades = tables.Grades.getStudentGrades(studentID);
+        List<String> studentIDs = tables.Students.getIdsByGuardian(this.ID);
+        for(ArrayList<HashMap<String,String>> grades : tables.Grades.getGradesByStudents(studentIDs).values()){
             childGrades.addAll(grades);
         }
         return childGrades.toArray(new HashMap[0]);
     }
     public HashMap[] getChildDisciplinary() throws SQLException{
         ArrayList<HashMap<String,String>> childDisciplinary = new ArrayList<>();
-        String sql = "SELECT id FROM students_encrypted WHERE guardian_id = ?";
-        String[] params = {this.ID};
-        ResultSet rs = DBConnect.dbConnector.executeQuery(sql,params);
-        while(rs.next()){
-            String studentID = rs.getString("id");
-            ArrayList<HashMap<String,String>> disciplinary = tables.Disciplinary.getStudentDisciplinary(studentID);
+        List<String> studentIDs = tables.Students.getIdsByGuardian(this.ID);
+        for(ArrayList<HashMap<String,String>> disciplinary : tables.Disciplinary.getDisciplinaryByStudents(studentIDs).values()){
             childDisciplinary.addAll(disciplinary);
         }
         return childDisciplinary.toArray(new HashMap[0]);
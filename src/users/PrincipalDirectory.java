@@ -0,0 +1,241 @@
+package users;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import service.DBConnect;
+import tables.Principals;
+import tables.Principals.Principal;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 认证用的账户目录缓存：email -> 账户（类型、ID、显示信息），以及 (表, id) -> 账户；盐和哈希不缓存，见 Principals.findCredentials。
+ * 不存在的邮箱先经过布隆过滤器（全量邮箱，定时重建），再经过短期负缓存，撞库流量不再落到数据库。
+ * 邮箱等变化时由 User.updateInfo 失效；失效时递增代数，与之并发的加载结果不会被缓存。
+ */
+@Component
+public class PrincipalDirectory {
+    public static PrincipalDirectory directory;
+
+    private final Cache<String, List<Principal>> byEmail = Caffeine.newBuilder()
+            .maximumSize(100_000)
+            .expireAfterWrite(Duration.ofMinutes(30))
+            .recordStats()
+            .build();
+    private final Cache<String, Principal> byId = Caffeine.newBuilder()
+            .maximumSize(100_000)
+            .expireAfterWrite(Duration.ofMinutes(30))
+            .recordStats()
+            .build();
+    //布隆过滤器误判的邮箱
+    private final Cache<String, Boolean> unknownEmails = Caffeine.newBuilder()
+            .maximumSize(200_000)
+            .expireAfterWrite(Duration.ofMinutes(5))
+            .build();
+
+    private final AtomicLong generation = new AtomicLong();
+    private final LongAdder bloomRejects = new LongAdder();
+    private volatile EmailFilter filter;
+    private EmailFilter building;
+
+    private static final String ALL_EMAILS_SQL = "SELECT email FROM students_encrypted " +
+            "UNION ALL SELECT email FROM guardians_encrypted UNION ALL SELECT email FROM staffs_encrypted";
+
+    @Autowired
+    public void setSelf() {
+        directory = this;
+    }
+
+    //按 students、guardians、staffs 顺序返回该邮箱的账户，不存在时返回空列表
+    public List<Principal> findByEmail(String email) throws SQLException {
+        String key = emailKey(email);
+        List<Principal> cached = byEmail.getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+        EmailFilter f = filter;
+        if (f != null && !f.mightContain(key)) {
+            bloomRejects.increment();
+            return List.of();
+        }
+        if (unknownEmails.getIfPresent(key) != null) {
+            return List.of();
+        }
+        long seen = generation.get();
+        List<Principal> found = List.copyOf(Principals.findByEmail(email));
+        if (found.isEmpty()) {
+            unknownEmails.put(key, Boolean.TRUE);
+            if (generation.get() != seen) {
+                unknownEmails.invalidate(key);
+            }
+            return found;
+        }
+        byEmail.put(key, found);
+        for (Principal p : found) {
+            byId.put(idKey(p.userType(), p.id()), p);
+        }
+        //加载期间有失效：撤回
+        if (generation.get() != seen) {
+            byEmail.asMap().remove(key, found);
+            for (Principal p : found) {
+                byId.asMap().remove(idKey(p.userType(), p.id()), p);
+            }
+        }
+        return found;
+    }
+
+    //table 为 students / guardians / staffs
+    public Principal findById(String table, String id) throws SQLException {
+        String key = idKey(table, id);
+        Principal cached = byId.getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+        long seen = generation.get();
+        Principal found = Principals.findById(table, id);
+        if (found != null) {
+            byId.put(key, found);
+            if (generation.get() != seen) {
+                byId.asMap().remove(key, found);
+            }
+        }
+        return found;
+    }
+
+    //盐、哈希或邮箱变更后调用，emails 传入旧邮箱和新邮箱
+    public void invalidate(String table, String id, String... emails) {
+        generation.incrementAndGet();
+        byId.invalidate(idKey(table, id));
+        for (String email : emails) {
+            if (email != null) {
+                byEmail.invalidate(emailKey(email));
+                unknownEmails.invalidate(emailKey(email));
+            }
+        }
+    }
+
+    //新账户或新邮箱写入数据库之后调用
+    public synchronized void emailAdded(String email) {
+        String key = emailKey(email);
+        if (filter != null) {
+            filter.add(key);
+        }
+        if (building != null) {
+            building.add(key);
+        }
+        generation.incrementAndGet();
+        unknownEmails.invalidate(key);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        scheduledRebuild();
+    }
+
+    //应用外（如 TestAccountSeeder）新增的账户在下一次重建后才能通过过滤器
+    @Scheduled(fixedDelayString = "${app.auth.email-filter-rebuild-ms:300000}", initialDelayString = "${app.auth.email-filter-rebuild-ms:300000}")
+    public void scheduledRebuild() {
+        try {
+            rebuildFilter();
+        } catch (SQLException e) {
+            System.out.println("Error: failed to build email filter: " + e.getMessage());
+        }
+    }
+
+    public void rebuildFilter() throws SQLException {
+        EmailFilter next;
+        Integer count = DBConnect.dbConnector.queryOne("SELECT COUNT(*) AS n FROM (" + ALL_EMAILS_SQL + ") t", new String[0], rs -> rs.getInt("n"));
+        next = new EmailFilter(count == null ? 0 : count);
+        synchronized (this) {
+            building = next;
+        }
+        try {
+            DBConnect.dbConnector.forEach(ALL_EMAILS_SQL, new String[0], rs -> next.add(emailKey(rs.getString("email"))));
+            synchronized (this) {
+                filter = next;
+            }
+        } finally {
+            synchronized (this) {
+                building = null;
+            }
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("emailHitRate", byEmail.stats().hitRate());
+        m.put("idHitRate", byId.stats().hitRate());
+        m.put("emailEntries", byEmail.estimatedSize());
+        m.put("unknownEntries", unknownEmails.estimatedSize());
+        m.put("filterRejects", bloomRejects.sum());
+        return m;
+    }
+
+    //与MySQL默认排序规则一致：忽略大小写
+    private static String emailKey(String email) {
+        return email == null ? "" : email.strip().toLowerCase(Locale.ROOT);
+    }
+
+    private static String idKey(String table, String id) {
+        return table.toLowerCase(Locale.ROOT) + "|" + id;
+    }
+
+    //布隆过滤器：每个邮箱约10位、7个哈希，误判率约1%
+    private static final class EmailFilter {
+        private static final int HASHES = 7;
+        private final BitSet bits;
+        private final int size;
+
+        EmailFilter(int expected) {
+            this.size = Math.max(1 << 16, expected * 10);
+            this.bits = new BitSet(size);
+        }
+
+        synchronized void add(String key) {
+            long h = hash(key);
+            int h1 = (int) h, h2 = (int) (h >>> 32);
+            for (int i = 0; i < HASHES; i++) {
+                bits.set(Math.floorMod(h1 + i * h2, size));
+            }
+        }
+
+        synchronized boolean mightContain(String key) {
+            long h = hash(key);
+            int h1 = (int) h, h2 = (int) (h >>> 32);
+            for (int i = 0; i < HASHES; i++) {
+                if (!bits.get(Math.floorMod(h1 + i * h2, size))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        //FNV-1a 64 + murmur3 fmix64
+        private static long hash(String key) {
+            long h = 0xcbf29ce484222325L;
+            for (int i = 0; i < key.length(); i++) {
+                h ^= key.charAt(i);
+                h *= 0x100000001b3L;
+            }
+            h ^= h >>> 33;
+            h *= 0xff51afd7ed558ccdL;
+            h ^= h >>> 33;
+            h *= 0xc4ceb9fe1a85ec53L;
+            h ^= h >>> 33;
+            return h;
+        }
+    }
+}
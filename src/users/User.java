@@ -1,13 +1,21 @@
 package users;
 
 import service.DBConnect;
+import service.SqlTemplate;
+import service.SqlTemplates;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 public abstract class User {
+    //非字符串列按 表.列 声明绑定类型，其余列按字符串绑定
+    private static final Map<String, SqlTemplate.Type> COLUMN_TYPES = Map.of(
+            "students.enrollment_year", SqlTemplate.Type.INT);
+
     String ID, type;
     public User(String ID) {
         this.ID = ID;
@@ -42,10 +50,35 @@ public abstract class User {
         }
         valNormal.add(this.ID);
         valEnc.add(this.ID);
-        if(valNormal.size() > 1)
-            DBConnect.dbConnector.executeUpdate(sql.toString(), valNormal.toArray(new String[0]));
-        if(valEnc.size() > 1)
-            DBConnect.dbConnector.executeUpdate(sqlEnc.toString(), valEnc.toArray(new String[0]));
+        //盐、哈希、邮箱变化时需要失效账户目录缓存，先取出旧邮箱
+        String table = this.type.toLowerCase();
+        boolean credentialChange = map.containsKey("email") || map.containsKey("salt") || map.containsKey("password_hash");
+        String[] oldEmail = new String[1];
+        //明文表与加密表在同一连接、同一事务内更新
+        try {
+            DBConnect.dbConnector.inTransaction(tx -> {
+                if(credentialChange)
+                    oldEmail[0] = tx.queryOne(SqlTemplates.dynamic("users.email." + table,
+                            "SELECT email FROM %s_encrypted WHERE id = ?".formatted(table), SqlTemplate.Type.STRING),
+                            new String[]{this.ID}, rs -> rs.getString("email"));
+                if(valNormal.size() > 1)
+                    tx.executeUpdate(template("users.update." + table, sql.toString(), table, attNormal, 1),
+                            valNormal.toArray(new String[0]));
+                if(valEnc.size() > 1)
+                    tx.executeUpdate(template("users.update." + table + "_encrypted", sqlEnc.toString(), table + "_encrypted", attEnc, 1),
+                            valEnc.toArray(new String[0]));
+            });
+        } finally {
+            if(credentialChange && PrincipalDirectory.directory != null){
+                PrincipalDirectory.directory.invalidate(table, this.ID, oldEmail[0], map.get("email"));
+                if(map.get("email") != null)
+                    PrincipalDirectory.directory.emailAdded(map.get("email"));
+            }
+            //报告里带学生姓名
+            if("Students".equalsIgnoreCase(this.type)){
+                tables.ReportCache.invalidate(this.ID);
+            }
+        }
     }
     public HashMap<String,String> queryInfo() throws SQLException {
         String[] normalAttributes = getNormalAttributes();
@@ -102,24 +135,17 @@ public abstract class User {
         } else {
             return false;
         }
-        String sql = "SELECT COUNT(*) AS count FROM %s_encrypted WHERE id = ? AND password_hash = ?".formatted(table);
-        String[] params = {ID, passwdHash};
-        try (ResultSet rs = DBConnect.dbConnector.executeQuery(sql, params)) {
-            if (!rs.next() || rs.getInt("count") <= 0) {
-                return false;
-            }
+        //账户信息走目录缓存，哈希按主键现取后在应用内比较
+        tables.Principals.Principal p = PrincipalDirectory.directory.findById(table, ID);
+        if (p == null) {
+            return false;
+        }
+        tables.Principals.Credentials c = tables.Principals.findCredentials(table, ID);
+        if (c == null || !utils.SecurityUtils.hashEquals(passwdHash, c.passwordHash())) {
+            return false;
         }
         if ("staffs".equals(table) && staffRoleCheck && expectStaffRole != null) {
-            String staffTypeSql = "SELECT role FROM staffs WHERE id = ?";//从staff表中检查身份是否正确
-            String[] staffTypeParams = {ID};
-            try (ResultSet staffRs = DBConnect.dbConnector.executeQuery(staffTypeSql, staffTypeParams)) {
-                if (staffRs.next()) {
-                    String staffRole = staffRs.getString("role");
-                    return expectStaffRole.equals(staffRole);
-                } else {
-                    return false;
-                }
-            }
+            return expectStaffRole.equals(p.role());//检查staff身份是否正确
         }
         return true;
     }
@@ -128,6 +154,8 @@ public abstract class User {
         StringBuilder sqlEnc = new StringBuilder("INSERT INTO %s_encrypted (id, ".formatted(userType));
         ArrayList<String> valNormal = new ArrayList<>();
         ArrayList<String> valEnc = new ArrayList<>();
+        ArrayList<String> attNormal = new ArrayList<>();
+        ArrayList<String> attEnc = new ArrayList<>(List.of("id"));
         ArrayList<String> attList = new ArrayList<>();
         ArrayList<String> valList = new ArrayList<>();
         for(String key : map.keySet()){
@@ -140,9 +168,11 @@ public abstract class User {
             if (utils.SecurityUtils.isEncrypted(att[i])) {
                 sqlEnc.append(i == att.length - 1 ? "%s) VALUES (".formatted(att[i]) : "%s, ".formatted(att[i]));
                 valEnc.add(val[i]);
+                attEnc.add(att[i]);
             } else {
                 sql.append(i == att.length - 1 ? "%s) VALUES (".formatted(att[i]) : "%s, ".formatted(att[i]));
                 valNormal.add(val[i]);
+                attNormal.add(att[i]);
                 if(att[i].equals("id")){
                     valEnc.add(val[i]);
                 }
@@ -154,7 +184,26 @@ public abstract class User {
         for(int i=0;i<valEnc.size();i++){
             sqlEnc.append(i == valEnc.size() - 1 ? "?)" : "?, ");
         }
-        DBConnect.dbConnector.executeUpdate(sql.toString(), valNormal.toArray(new String[0]));
-        DBConnect.dbConnector.executeUpdate(sqlEnc.toString(), valEnc.toArray(new String[0]));
+        String table = userType.toLowerCase();
+        DBConnect.dbConnector.inTransaction(tx -> {
+            tx.executeUpdate(template("users.insert." + table, sql.toString(), table, attNormal, 0),
+                    valNormal.toArray(new String[0]));
+            tx.executeUpdate(template("users.insert." + table + "_encrypted", sqlEnc.toString(), table + "_encrypted", attEnc, 0),
+                    valEnc.toArray(new String[0]));
+        });
+        if(map.get("email") != null && PrincipalDirectory.directory != null){
+            PrincipalDirectory.directory.emailAdded(map.get("email"));
+        }
+    }
+
+    //按列生成类型化模板；trailing 为末尾 WHERE id = ? 等字符串参数个数
+    private static SqlTemplate template(String name, String sql, String table, List<String> columns, int trailing) {
+        SqlTemplate.Type[] types = new SqlTemplate.Type[columns.size() + trailing];
+        for (int i = 0; i < types.length; i++) {
+            types[i] = i < columns.size()
+                    ? COLUMN_TYPES.getOrDefault(table + "." + columns.get(i), SqlTemplate.Type.STRING)
+                    : SqlTemplate.Type.STRING;
+        }
+        return SqlTemplates.dynamic(name, sql, types);
     }
 }
@@ -0,0 +1,121 @@
+package utils;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 密码哈希专用的有界线程池：哈希不占用Tomcat请求线程，队列满或等待超时时直接抛 BusyException（调用方返回503），
+ * 登录高峰时成绩、报告等接口不受影响。
+ */
+@Component
+public class PasswordHasher {
+    private static final Logger log = LoggerFactory.getLogger(PasswordHasher.class);
+
+    public static final class BusyException extends RuntimeException {
+        BusyException(String message) {
+            super(message);
+        }
+    }
+
+    private final ThreadPoolExecutor executor;
+    private final long timeoutMillis;
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder timedOut = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final LongAdder hashNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    public PasswordHasher(@Value("${app.auth.hash-threads:0}") int threads,
+                          @Value("${app.auth.hash-queue:64}") int queueCapacity,
+                          @Value("${app.auth.hash-timeout-ms:2000}") long timeoutMillis) {
+        int n = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        AtomicInteger seq = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(n, n, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                r -> {
+                    Thread t = new Thread(r, "password-hash-" + seq.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    //等价于 SecurityUtils.getPasswdHash，但在哈希线程池上执行
+    public String hash(String password, String salt) {
+        long submittedAt = System.nanoTime();
+        Future<String> future;
+        try {
+            future = executor.submit(() -> {
+                long start = System.nanoTime();
+                waitNanos.add(start - submittedAt);
+                String h = SecurityUtils.getPasswdHash(password, salt);
+                hashNanos.add(System.nanoTime() - start);
+                return h;
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new BusyException("password hashing queue full");
+        }
+        try {
+            String h = future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            completed.increment();
+            maxNanos.accumulateAndGet(System.nanoTime() - submittedAt, Math::max);
+            return h;
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            timedOut.increment();
+            throw new BusyException("password hashing timed out");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.cancel(true);
+            throw new BusyException("interrupted while hashing password");
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Error hashing password", e.getCause());
+        }
+    }
+
+    //计算哈希并与存储的哈希做常量时间比较
+    public boolean verify(String password, String salt, String expectedHash) {
+        return SecurityUtils.hashEquals(hash(password, salt), expectedHash);
+    }
+
+    public Map<String, Object> stats() {
+        long done = completed.sum();
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("threads", executor.getMaximumPoolSize());
+        m.put("active", executor.getActiveCount());
+        m.put("queued", executor.getQueue().size());
+        m.put("queueRemaining", executor.getQueue().remainingCapacity());
+        m.put("completed", done);
+        m.put("rejected", rejected.sum());
+        m.put("timedOut", timedOut.sum());
+        m.put("avgWaitMs", done == 0 ? 0.0 : waitNanos.sum() / 1e6 / done);
+        m.put("avgHashMs", done == 0 ? 0.0 : hashNanos.sum() / 1e6 / done);
+        m.put("maxLatencyMs", maxNanos.get() / 1e6);
+        return m;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+        log.info("Password hashing executor stopped: {}", stats());
+    }
+}
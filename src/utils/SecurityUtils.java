@@ -1,51 +1,69 @@
 package utils;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 
 public class SecurityUtils {
-    
+    //MessageDigest 非线程安全，每个线程复用一个实例
+    private static final ThreadLocal<MessageDigest> SHA3_256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA3-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA3-256 not available", e);
+        }
+    });
+    //共享的DRBG（线程安全，不读阻塞熵源）
+    private static final SecureRandom RANDOM = newRandom();
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private static SecureRandom newRandom() {
+        try {
+            return SecureRandom.getInstance("DRBG");
+        } catch (NoSuchAlgorithmException e) {
+            return new SecureRandom();
+        }
+    }
+
+    //小写hex，与 String.format("%02x") 逐字节输出一致
+    public static String toHex(byte[] bytes) {
+        char[] out = new char[bytes.length * 2];
+        for (int i = 0, j = 0; i < bytes.length; i++) {
+            int v = bytes[i] & 0xff;
+            out[j++] = HEX[v >>> 4];
+            out[j++] = HEX[v & 0x0f];
+        }
+        return new String(out);
+    }
+
     public static String generateSalt() {
-        SecureRandom random = new SecureRandom();
         byte[] salt = new byte[16];
-        random.nextBytes(salt);
-        StringBuilder sb = new StringBuilder();
-        for (byte b : salt) {
-            sb.append(String.format("%02x", b));//byte 转 hex string
-        }
-        return sb.toString();
+        RANDOM.nextBytes(salt);
+        return toHex(salt);//byte 转 hex string
     }
 
-    
+    //等价于 SHA3-256(UTF-8(password + salt))，分两段喂给摘要，不再拼接字符串
     public static String getPasswdHash(String password, String salt) {
-        try {
-            MessageDigest md = MessageDigest.getInstance("SHA3-256");
-            String saltedPassword = password + salt;
-            byte[] hashBytes = md.digest(saltedPassword.getBytes(StandardCharsets.UTF_8));
-            StringBuilder sb = new StringBuilder();
-            for (byte b : hashBytes) {
-                sb.append(String.format("%02x", b));
-            }
-            return sb.toString();
-        } catch (Exception e) {
-            throw new RuntimeException("Error hashing password", e);
-        }
+        MessageDigest md = SHA3_256.get();
+        md.reset();
+        md.update(password.getBytes(StandardCharsets.UTF_8));
+        md.update(salt.getBytes(StandardCharsets.UTF_8));
+        return toHex(md.digest());
     }
 
     
     @Deprecated
     public static String getPasswdHash(String password) {
-        try {
-            MessageDigest md = MessageDigest.getInstance("SHA3-256");
-            byte[] hashBytes = md.digest(password.getBytes(StandardCharsets.UTF_8));
-            StringBuilder sb = new StringBuilder();
-            for (byte b : hashBytes) {
-                sb.append(String.format("%02x", b));
-            }
-            return sb.toString();
-        } catch (Exception e) {
-            throw new RuntimeException("Error hashing password", e);
+        MessageDigest md = SHA3_256.get();
+        md.reset();
+        return toHex(md.digest(password.getBytes(StandardCharsets.UTF_8)));
+    }
+    //常量时间比较两个哈希串，避免按位提前返回泄露匹配长度
+    public static boolean hashEquals(String a, String b) {
+        if (a == null || b == null) {
+            return false;
         }
+        return MessageDigest.isEqual(a.getBytes(StandardCharsets.UTF_8), b.getBytes(StandardCharsets.UTF_8));
     }
     private static final String[] encryptedAtt = {
             "email", "phone", "password_hash", "salt", "guardian_id", "guardian_relation", "gender",
@@ -0,0 +1,33 @@
+package app;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+//整个上下文能启动（含Boot自带的错误控制器），路由表由控制器注解生成；不需要数据库
+@SpringBootTest(properties = {
+        "spring.datasource.hikari.connection-timeout=250",
+        "app.courses.refresh-ms=3600000",
+        "app.auth.email-filter-rebuild-ms=3600000"
+})
+class ApplicationContextTest {
+
+    @Autowired
+    private RouteTable routeTable;
+
+    @Test
+    void contextLoadsWithCompiledRoutes() {
+        RouteTable.Route grades = routeTable.route("GET", "/API/grades");
+        assertNotNull(grades);
+        assertEquals(Role.ARO.bit(), grades.roles());
+        assertTrue(routeTable.route("POST", "/API/login").isPublic());
+        assertTrue(routeTable.route("PUT", "/API/profile").allows(Role.maskOf("guardian")));
+        //框架自带的控制器不进路由表
+        assertNull(routeTable.route("GET", "/error"));
+    }
+}
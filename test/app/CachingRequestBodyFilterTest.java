@@ -0,0 +1,54 @@
+package app;
+
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.http.HttpServletRequest;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.DelegatingServletInputStream;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+//长度未知的请求：HTTP/2 的body没有Content-Length也要缓存，HTTP/1.1 无长度无chunked才当作没有body
+class CachingRequestBodyFilterTest {
+    private static final String BODY = "{\"studentId\":\"S001\"}";
+
+    private final CachingRequestBodyFilter filter = new CachingRequestBodyFilter(1024, 16, 4);
+
+    private static HttpServletRequest request(String protocol) throws Exception {
+        HttpServletRequest req = mock(HttpServletRequest.class);
+        when(req.getMethod()).thenReturn("POST");
+        when(req.getProtocol()).thenReturn(protocol);
+        when(req.getContentLengthLong()).thenReturn(-1L);
+        when(req.getInputStream()).thenReturn(new DelegatingServletInputStream(
+                new ByteArrayInputStream(BODY.getBytes(StandardCharsets.UTF_8))));
+        return req;
+    }
+
+    @Test
+    void http2BodyWithoutLengthIsCached() throws Exception {
+        ServletRequest[] seen = new ServletRequest[1];
+        filter.doFilter(request("HTTP/2.0"), new MockHttpServletResponse(), (r, s) -> seen[0] = r);
+        CachedBodyHttpServletRequest cached = assertInstanceOf(CachedBodyHttpServletRequest.class, seen[0]);
+        //可重复读取
+        assertEquals(BODY, new String(cached.getInputStream().readAllBytes(), StandardCharsets.UTF_8));
+        assertEquals(BODY, new String(cached.getInputStream().readAllBytes(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void http11WithoutLengthOrChunkedPassesThrough() throws Exception {
+        HttpServletRequest req = request("HTTP/1.1");
+        ServletRequest[] seen = new ServletRequest[1];
+        filter.doFilter(req, new MockHttpServletResponse(), (r, s) -> seen[0] = r);
+        assertSame(req, seen[0]);
+        verify(req, never()).getInputStream();
+    }
+}
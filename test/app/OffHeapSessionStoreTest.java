@@ -0,0 +1,64 @@
+package app;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+//offheap 模式同样执行每用户会话上限，撤销全部会话在重启重载后仍然有效
+class OffHeapSessionStoreTest {
+    @TempDir
+    Path dir;
+
+    private OffHeapSessionStore open() throws Exception {
+        return new OffHeapSessionStore(dir.resolve("sessions.map").toString(), 64, 3600, 1800, 2);
+    }
+
+    private static Map<String, Object> claims(String userId) {
+        return Map.of("userId", userId, "role", "student", "email", userId + "@example.com", "name", userId);
+    }
+
+    @Test
+    void oldestSessionEvictedOverLimit() throws Exception {
+        OffHeapSessionStore store = open();
+        try {
+            Session first = store.create(claims("S001"));
+            Session second = store.create(claims("S001"));
+            Session third = store.create(claims("S001"));
+            Session other = store.create(claims("S002"));
+
+            assertNull(store.get(first.getSid()));
+            assertNotNull(store.get(second.getSid()));
+            assertNotNull(store.get(third.getSid()));
+            assertNotNull(store.get(other.getSid()));
+            assertEquals(3L, store.countByRole().get("student"));
+        } finally {
+            store.close();
+        }
+    }
+
+    @Test
+    void invalidateUserAfterReload() throws Exception {
+        OffHeapSessionStore store = open();
+        Session a = store.create(claims("S001"));
+        Session b = store.create(claims("S001"));
+        Session other = store.create(claims("S002"));
+        store.close();
+
+        OffHeapSessionStore reloaded = open();
+        try {
+            reloaded.invalidateUser("student", "S001");
+            assertNull(reloaded.get(a.getSid()));
+            assertNull(reloaded.get(b.getSid()));
+            assertNotNull(reloaded.get(other.getSid()));
+            assertEquals(1L, reloaded.countByRole().get("student"));
+        } finally {
+            reloaded.close();
+        }
+    }
+}
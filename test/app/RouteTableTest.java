@@ -0,0 +1,67 @@
+package app;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationContext;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class RouteTableTest {
+    private RouteTable table;
+
+    @BeforeEach
+    void setUp() {
+        ApplicationContext context = mock(ApplicationContext.class);
+        when(context.getEnvironment()).thenReturn(new MockEnvironment().withProperty("app.items.path", "/API/items"));
+        when(context.getBeanNamesForAnnotation(any())).thenReturn(new String[0]);
+        table = new RouteTable(context);
+    }
+
+    @RequestMapping("${app.items.path}")
+    static class ItemController {
+        @GetMapping("/{id}")
+        @Roles({Role.ARO, Role.DRO})
+        public void item() {}
+
+        @GetMapping("/special")
+        @Roles(Role.DRO)
+        public void special() {}
+
+        @PostMapping("/login")
+        @PublicRoute
+        public void login() {}
+    }
+
+    static class UnannotatedController {
+        @GetMapping("/API/unannotated")
+        public void handler() {}
+    }
+
+    @Test
+    void compilesAnnotatedMappingsWithPlaceholders() {
+        table.register(ItemController.class);
+
+        RouteTable.Route item = table.route("GET", "/API/items/42");
+        assertEquals("/API/items/{id}", item.pattern());
+        assertTrue(item.allows(Role.maskOf("ARO")));
+        assertEquals(Role.DRO.bit(), table.route("GET", "/API/items/special").roles());
+        assertTrue(table.route("POST", "/API/items/login").isPublic());
+        assertNull(table.route("POST", "/API/items/42"));
+        assertNull(table.route("GET", "/API/items/"));
+    }
+
+    @Test
+    void rejectsHandlerWithoutRoles() {
+        assertThrows(IllegalStateException.class, () -> table.register(UnannotatedController.class));
+    }
+}
@@ -0,0 +1,112 @@
+package http;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import service.CourseCatalog;
+import service.DBConnect;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+//上传里的ID大小写与库中不同时，仍要命中已有成绩（UPDATE），不能再插入一条
+class GradeBulkUploadTest {
+    private DBConnect previousDb;
+    private CourseCatalog previousCatalog;
+    private final List<String> prepared = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        previousDb = DBConnect.dbConnector;
+        previousCatalog = CourseCatalog.catalog;
+
+        DataSource dataSource = mock(DataSource.class);
+        Connection connection = mock(Connection.class);
+        when(dataSource.getConnection()).thenReturn(connection);
+        when(connection.prepareStatement(anyString())).thenAnswer(inv -> statement(inv.getArgument(0)));
+
+        DBConnect db = new DBConnect();
+        ReflectionTestUtils.setField(db, "dataSource", dataSource);
+        DBConnect.dbConnector = db;
+        //课程目录按忽略大小写匹配，返回传入的写法
+        CourseCatalog.catalog = mock(CourseCatalog.class);
+        when(CourseCatalog.catalog.getIdsByName(anyCollection())).thenReturn(Map.of());
+        when(CourseCatalog.catalog.existingIds(anyCollection())).thenAnswer(inv -> Set.copyOf(inv.<List<String>>getArgument(0)));
+    }
+
+    @AfterEach
+    void tearDown() {
+        DBConnect.dbConnector = previousDb;
+        CourseCatalog.catalog = previousCatalog;
+    }
+
+    private PreparedStatement statement(String sql) throws Exception {
+        prepared.add(sql);
+        PreparedStatement statement = mock(PreparedStatement.class);
+        ResultSet rs = mock(ResultSet.class);
+        when(statement.executeQuery()).thenReturn(rs);
+        when(statement.executeBatch()).thenReturn(new int[]{1});
+        if (sql.contains("FROM students")) {
+            when(rs.next()).thenReturn(true, false);
+            when(rs.getString("id")).thenReturn("S001");
+        } else if (sql.contains("FROM grades")) {
+            when(rs.next()).thenReturn(true, false);
+            when(rs.getString("student_id")).thenReturn("S001");
+            when(rs.getString("course_id")).thenReturn("COMP3335");
+            when(rs.getString("term")).thenReturn("2024S1");
+            when(rs.getString("encrypted_id")).thenReturn("enc-1");
+        }
+        return statement;
+    }
+
+    private static GradeBulkUpload.Row row(int line, String studentId, String courseId) {
+        GradeBulkUpload.Row row = new GradeBulkUpload.Row(line);
+        row.studentId = studentId;
+        row.courseId = courseId;
+        row.term = "2024S1";
+        row.grade = "A";
+        row.comments = "";
+        return row;
+    }
+
+    @Test
+    void existingGradeInOtherCasingIsUpdated() throws Exception {
+        GradeBulkUpload.Row row = row(2, "s001", "comp3335");
+        List<GradeBulkUpload.Row> rows = List.of(row);
+
+        GradeBulkUpload.resolve(rows);
+        GradeBulkUpload.write(rows);
+
+        assertEquals("updated", row.status);
+        assertEquals("enc-1", row.id);
+        assertEquals("S001", row.studentId);
+        assertTrue(prepared.stream().anyMatch(sql -> sql.startsWith("UPDATE grades_encrypted")));
+        assertFalse(prepared.stream().anyMatch(sql -> sql.startsWith("INSERT")));
+    }
+
+    @Test
+    void duplicateInOtherCasingIsRejected() throws Exception {
+        GradeBulkUpload.Row first = row(2, "S001", "COMP3335");
+        GradeBulkUpload.Row second = row(3, "s001 ", "Comp3335");
+
+        GradeBulkUpload.resolve(List.of(first, second));
+
+        assertFalse(first.failed());
+        assertEquals("duplicate row in upload", second.message);
+    }
+}
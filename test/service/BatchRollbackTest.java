@@ -0,0 +1,52 @@
+package service;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+//分批执行遇到非BatchUpdateException时，当前批必须在恢复autoCommit之前回滚
+class BatchRollbackTest {
+
+    @Test
+    void rollsBackFailedChunkAndReportsCommittedRows() throws Exception {
+        DataSource dataSource = mock(DataSource.class);
+        Connection connection = mock(Connection.class);
+        PreparedStatement statement = mock(PreparedStatement.class);
+        when(dataSource.getConnection()).thenReturn(connection);
+        when(connection.getAutoCommit()).thenReturn(true);
+        when(connection.prepareStatement(anyString())).thenReturn(statement);
+        when(statement.executeBatch())
+                .thenReturn(new int[]{1, 1})
+                .thenThrow(new SQLException("Communications link failure", "08S01"));
+
+        DBConnect db = new DBConnect();
+        ReflectionTestUtils.setField(db, "dataSource", dataSource);
+        List<String[]> rows = List.of(new String[]{"a"}, new String[]{"b"}, new String[]{"c"}, new String[]{"d"});
+
+        BatchFailedException e = assertThrows(BatchFailedException.class,
+                () -> db.executeBatch("INSERT INTO t VALUES (?)", rows, 2));
+        assertEquals(2, e.getFromRow());
+        assertEquals(4, e.getToRow());
+        assertEquals(2, e.getCommittedRows());
+        assertEquals("08S01", e.getSQLState());
+
+        InOrder order = inOrder(connection);
+        order.verify(connection).setAutoCommit(false);
+        order.verify(connection).commit();
+        order.verify(connection).rollback();
+        order.verify(connection).setAutoCommit(true);
+    }
+}
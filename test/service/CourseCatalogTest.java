@@ -0,0 +1,75 @@
+package service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+//内存目录的查找要与原来的 WHERE id = ? 一样忽略大小写
+class CourseCatalogTest {
+    private static final List<String[]> COURSES = List.of(
+            new String[]{"COMP3335", "Database Security"},
+            new String[]{"COMP2011", "Data Structures"});
+
+    private DBConnect previousDb;
+    private CourseCatalog catalog;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        previousDb = DBConnect.dbConnector;
+
+        DataSource dataSource = mock(DataSource.class);
+        Connection connection = mock(Connection.class);
+        PreparedStatement statement = mock(PreparedStatement.class);
+        when(dataSource.getConnection()).thenReturn(connection);
+        when(connection.prepareStatement(anyString())).thenReturn(statement);
+        when(statement.executeQuery()).thenAnswer(inv -> courses());
+
+        DBConnect db = new DBConnect();
+        ReflectionTestUtils.setField(db, "dataSource", dataSource);
+        DBConnect.dbConnector = db;
+        catalog = new CourseCatalog();
+        catalog.refresh();
+    }
+
+    @AfterEach
+    void tearDown() {
+        DBConnect.dbConnector = previousDb;
+    }
+
+    private static ResultSet courses() throws Exception {
+        ResultSet rs = mock(ResultSet.class);
+        int[] row = {0};
+        when(rs.next()).thenAnswer(inv -> row[0]++ < COURSES.size());
+        when(rs.getString("id")).thenAnswer(inv -> COURSES.get(row[0] - 1)[0]);
+        when(rs.getString("name")).thenAnswer(inv -> COURSES.get(row[0] - 1)[1]);
+        return rs;
+    }
+
+    @Test
+    void courseIdsIgnoreCase() throws Exception {
+        assertEquals("Database Security", catalog.getName("comp3335"));
+        assertEquals("Database Security", catalog.getName("Comp3335 "));
+        assertNull(catalog.getName("COMP9999"));
+        assertEquals(Set.of("comp2011", "COMP3335"), catalog.existingIds(List.of("comp2011", "COMP3335", "COMP9999")));
+    }
+
+    @Test
+    void courseNamesIgnoreCase() throws Exception {
+        assertEquals("COMP2011", catalog.getIdByName("DATA STRUCTURES"));
+        assertEquals(List.of("COMP2011", "COMP3335"), catalog.idsByNamePrefix("Data"));
+    }
+}
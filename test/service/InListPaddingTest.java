@@ -0,0 +1,34 @@
+package service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+//IN (...) 补齐后，任意长度的列表只产生少数几种SQL文本
+class InListPaddingTest {
+
+    @Test
+    void padsToPowerOfTwoRepeatingLastValue() {
+        assertArrayEquals(new String[]{"a"}, DBConnect.padInList(List.of("a")));
+        assertArrayEquals(new String[]{"a", "b", "c", "c"}, DBConnect.padInList(List.of("a", "b", "c")));
+        assertEquals(512, DBConnect.inListSize(500));
+    }
+
+    @Test
+    void chunkSizesShareFewTemplates() {
+        Set<String> sql = new HashSet<>();
+        List<String> ids = new ArrayList<>();
+        for (int n = 1; n <= 500; n++) {
+            ids.add("S" + n);
+            sql.add("SELECT id FROM students WHERE id IN (" + DBConnect.placeholders(DBConnect.padInList(ids).length) + ")");
+        }
+        assertTrue(sql.size() <= 10, "distinct IN-list shapes: " + sql.size());
+    }
+}
@@ -0,0 +1,76 @@
+package tables;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import service.CourseCatalog;
+import service.DBConnect;
+import service.SqlTemplates;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+//学生成绩（/API/reports 背后的 getStudentGrades）只能是一条JOIN查询，不能随行数增加
+class GradesQueryCountTest {
+    private static final int ROWS = 40;
+
+    private DBConnect previousDb;
+    private CourseCatalog previousCatalog;
+    private DataSource dataSource;
+    private Connection connection;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        previousDb = DBConnect.dbConnector;
+        previousCatalog = CourseCatalog.catalog;
+
+        dataSource = mock(DataSource.class);
+        connection = mock(Connection.class);
+        PreparedStatement statement = mock(PreparedStatement.class);
+        ResultSet rs = mock(ResultSet.class);
+        when(dataSource.getConnection()).thenReturn(connection);
+        when(connection.prepareStatement(anyString())).thenReturn(statement);
+        when(statement.executeQuery()).thenReturn(rs);
+        int[] row = {0};
+        when(rs.next()).thenAnswer(inv -> row[0]++ < ROWS);
+        when(rs.getString(anyString())).thenAnswer(inv -> inv.getArgument(0) + "-" + row[0]);
+
+        DBConnect db = new DBConnect();
+        ReflectionTestUtils.setField(db, "dataSource", dataSource);
+        DBConnect.dbConnector = db;
+        //课程名来自内存目录，不走数据库
+        CourseCatalog.catalog = mock(CourseCatalog.class);
+    }
+
+    @AfterEach
+    void tearDown() {
+        DBConnect.dbConnector = previousDb;
+        CourseCatalog.catalog = previousCatalog;
+    }
+
+    @Test
+    void studentGradesLoadWithOneQuery() throws Exception {
+        long executions = SqlTemplates.GRADE_BY_STUDENT.getExecutions();
+
+        ArrayList<HashMap<String, String>> grades = Grades.getStudentGrades("S1");
+
+        assertEquals(ROWS, grades.size());
+        assertEquals("grade-1", grades.get(0).get("grade"));
+        assertEquals("student_name-1", grades.get(0).get("student_name"));
+        assertEquals(1, SqlTemplates.GRADE_BY_STUDENT.getExecutions() - executions);
+        verify(dataSource, times(1)).getConnection();
+        verify(connection, times(1)).prepareStatement(anyString());
+    }
+}
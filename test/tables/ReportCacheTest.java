@@ -0,0 +1,72 @@
+package tables;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import service.CourseCatalog;
+import service.DBConnect;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+//写路径传入的学生ID大小写与缓存键不同，也必须失效同一份报告
+class ReportCacheTest {
+    private DBConnect previousDb;
+    private CourseCatalog previousCatalog;
+    private DataSource dataSource;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        previousDb = DBConnect.dbConnector;
+        previousCatalog = CourseCatalog.catalog;
+
+        dataSource = mock(DataSource.class);
+        Connection connection = mock(Connection.class);
+        PreparedStatement statement = mock(PreparedStatement.class);
+        when(dataSource.getConnection()).thenReturn(connection);
+        when(connection.prepareStatement(anyString())).thenReturn(statement);
+        when(statement.executeQuery()).thenAnswer(inv -> {
+            ResultSet rs = mock(ResultSet.class);
+            when(rs.next()).thenReturn(false);
+            return rs;
+        });
+
+        DBConnect db = new DBConnect();
+        ReflectionTestUtils.setField(db, "dataSource", dataSource);
+        DBConnect.dbConnector = db;
+        CourseCatalog.catalog = mock(CourseCatalog.class);
+    }
+
+    @AfterEach
+    void tearDown() {
+        DBConnect.dbConnector = previousDb;
+        CourseCatalog.catalog = previousCatalog;
+    }
+
+    @Test
+    void invalidateIgnoresCase() throws Exception {
+        String id = "RC-" + System.nanoTime();
+        assertTrue(ReportCache.get(List.of(id), 5000).get(0).isComplete());
+
+        clearInvocations(dataSource);
+        ReportCache.get(List.of(id), 5000);
+        verify(dataSource, never()).getConnection();
+
+        ReportCache.invalidate(id.toLowerCase() + " ");
+        ReportCache.get(List.of(id), 5000);
+        verify(dataSource, atLeastOnce()).getConnection();
+    }
+}
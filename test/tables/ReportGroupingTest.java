@@ -0,0 +1,79 @@
+package tables;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import service.CourseCatalog;
+import service.DBConnect;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+//IN (...) 忽略大小写匹配：数据库返回的 student_id 大小写与请求不同也要归到请求的学生下
+class ReportGroupingTest {
+    private DBConnect previousDb;
+    private CourseCatalog previousCatalog;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        previousDb = DBConnect.dbConnector;
+        previousCatalog = CourseCatalog.catalog;
+
+        DataSource dataSource = mock(DataSource.class);
+        Connection connection = mock(Connection.class);
+        PreparedStatement statement = mock(PreparedStatement.class);
+        when(dataSource.getConnection()).thenReturn(connection);
+        when(connection.prepareStatement(anyString())).thenReturn(statement);
+        //每次查询都返回两行：一行大小写不同的已请求学生，一行未请求的学生
+        when(statement.executeQuery()).thenAnswer(inv -> rows(List.of("s1", "X9")));
+
+        DBConnect db = new DBConnect();
+        ReflectionTestUtils.setField(db, "dataSource", dataSource);
+        DBConnect.dbConnector = db;
+        CourseCatalog.catalog = mock(CourseCatalog.class);
+    }
+
+    @AfterEach
+    void tearDown() {
+        DBConnect.dbConnector = previousDb;
+        CourseCatalog.catalog = previousCatalog;
+    }
+
+    private static ResultSet rows(List<String> studentIds) throws Exception {
+        ResultSet rs = mock(ResultSet.class);
+        int[] row = {0};
+        when(rs.next()).thenAnswer(inv -> row[0]++ < studentIds.size());
+        when(rs.getString(anyString())).thenAnswer(inv ->
+                "student_id".equals(inv.getArgument(0)) ? studentIds.get(row[0] - 1) : inv.getArgument(0));
+        return rs;
+    }
+
+    @Test
+    void gradesGroupedIgnoringCase() throws Exception {
+        Map<String, ArrayList<HashMap<String, String>>> byStudent = Grades.getGradesByStudents(List.of("S1", "S2"));
+
+        assertEquals(List.of("S1", "S2"), new ArrayList<>(byStudent.keySet()));
+        assertEquals(1, byStudent.get("S1").size());
+        assertEquals(0, byStudent.get("S2").size());
+    }
+
+    @Test
+    void disciplinaryGroupedIgnoringCase() throws Exception {
+        Map<String, ArrayList<HashMap<String, String>>> byStudent = Disciplinary.getDisciplinaryByStudents(List.of("S1", "s1", "S2"));
+
+        assertEquals(List.of("S1", "S2"), new ArrayList<>(byStudent.keySet()));
+        assertEquals(1, byStudent.get("S1").size());
+    }
+}